@@ -0,0 +1,195 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.AmazonWebServiceResult;
+import com.amazonaws.ResponseMetadata;
+import com.amazonaws.services.ec2.model.Instance;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.logging.log4j.LogManager;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.Credentials;
+import software.amazon.cloudformation.proxy.LoggerProxy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Records the EC2 calls of a create or delete lifecycle, in order and with their latencies, so that
+ * a lifecycle seen in production can be replayed offline against the handlers. Like
+ * {@link LifecycleTrace} it is keyed on the trace ID in the callback context and appends every
+ * re-invocation to the same file, {@code <traceId>.calls.jsonl} in the directory named by
+ * {@value #CALL_TRACE_DIR_ENV}; recording is off when that is unset.
+ *
+ * The file is JSON lines. Each invocation starts with an {@value #INVOCATION} line carrying the
+ * model it was given, followed by one {@value #CALL} line per call made through the client proxy:
+ * the operation, the request in the SDK's short form, the latency, and either the response or the
+ * error. Responses are the SDK models bean-mapped without their response metadata, except that
+ * instances use the compact {@link InstanceJson} form, which holds everything the handlers read.
+ */
+public class CallRecorder {
+    static final String CALL_TRACE_DIR_ENV = "WORDPRESS_CALL_TRACE_DIR";
+    static final String INVOCATION = "invocation";
+    static final String CALL = "call";
+    static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_EMPTY)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .addMixIn(AmazonWebServiceResult.class, ResultMixIn.class)
+            .registerModule(new SimpleModule()
+                    .addSerializer(Instance.class, new InstanceJson.Serializer())
+                    .addDeserializer(Instance.class, new InstanceJson.Deserializer()));
+    private static final String RESULT_PACKAGE = "com.amazonaws.services.ec2.model.";
+
+    private final String category;
+    private final Path directory;
+    private final LongSupplier clockInMs;
+    private final List<String> pendingLines = new ArrayList<>();
+    private String traceId;
+
+    public CallRecorder(final String category) {
+        this(category, directoryFromEnvironment(), System::currentTimeMillis);
+    }
+
+    CallRecorder(final String category, final Path directory, final LongSupplier clockInMs) {
+        this.category = category;
+        this.directory = directory;
+        this.clockInMs = clockInMs;
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    public void begin(final String traceId, final ResourceModel model) {
+        this.traceId = traceId;
+        pendingLines.clear();
+        if (isEnabled()) {
+            final ObjectNode line = MAPPER.createObjectNode()
+                    .put("type", INVOCATION)
+                    .put("category", category)
+                    .put("ts", clockInMs.getAsLong());
+            line.set("model", MAPPER.valueToTree(model));
+            pendingLines.add(line.toString());
+        }
+    }
+
+    /**
+     * @return a proxy that records every call made through it before handing it to the given one,
+     * or the given proxy itself when recording is off
+     */
+    public AmazonWebServicesClientProxy wrap(final AmazonWebServicesClientProxy proxy) {
+        return isEnabled() ? new RecordingProxy(proxy) : proxy;
+    }
+
+    /**
+     * Appends the calls of this invocation to the trace file. A trace that cannot be written is
+     * dropped rather than failing the handler.
+     */
+    public void end() {
+        if (!isEnabled() || pendingLines.isEmpty()) {
+            return;
+        }
+        final StringBuilder lines = new StringBuilder();
+        pendingLines.forEach(line -> lines.append(line).append('\n'));
+        pendingLines.clear();
+        try {
+            Files.createDirectories(directory);
+            Files.write(directory.resolve(traceId + ".calls.jsonl"), lines.toString().getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LogManager.getLogger(CallRecorder.class).warn("Dropping call trace {}", traceId, e);
+        }
+    }
+
+    /**
+     * @return the operation name of a request, e.g. DescribeInstances
+     */
+    public static String operationOf(final AmazonWebServiceRequest request) {
+        return request.getClass().getSimpleName().replaceFirst("Request$", "");
+    }
+
+    /**
+     * Reads back a response recorded for the operation.
+     */
+    public static AmazonWebServiceResult<?> readResponse(final String operation, final JsonNode response) throws IOException {
+        try {
+            return (AmazonWebServiceResult<?>) MAPPER.treeToValue(response, Class.forName(RESULT_PACKAGE + operation + "Result"));
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown EC2 operation " + operation, e);
+        }
+    }
+
+    private void record(final AmazonWebServiceRequest request,
+                        final long latencyInMs,
+                        final AmazonWebServiceResult<?> response,
+                        final RuntimeException error) {
+        final ObjectNode line = MAPPER.createObjectNode()
+                .put("type", CALL)
+                .put("operation", operationOf(request))
+                .put("request", request.toString())
+                .put("latencyMs", latencyInMs);
+        if (error == null) {
+            line.set("response", MAPPER.valueToTree(response));
+        } else {
+            final ObjectNode recordedError = line.putObject("error").put("message", error.getMessage());
+            if (error instanceof AmazonServiceException) {
+                final AmazonServiceException serviceError = (AmazonServiceException) error;
+                recordedError.put("code", serviceError.getErrorCode()).put("status", serviceError.getStatusCode());
+            }
+        }
+        synchronized (pendingLines) {
+            pendingLines.add(line.toString());
+        }
+    }
+
+    private static Path directoryFromEnvironment() {
+        final String configured = System.getenv(CALL_TRACE_DIR_ENV);
+        return configured == null || configured.isEmpty() ? null : Paths.get(configured);
+    }
+
+    @JsonIgnoreProperties({"sdkResponseMetadata", "sdkHttpMetadata"})
+    private abstract static class ResultMixIn {
+    }
+
+    /**
+     * Times and records each call, then passes it on unchanged. It only ever invokes through the
+     * proxy it wraps, so the placeholder credentials it is constructed with are never used.
+     */
+    private final class RecordingProxy extends AmazonWebServicesClientProxy {
+        private final AmazonWebServicesClientProxy delegate;
+
+        private RecordingProxy(final AmazonWebServicesClientProxy delegate) {
+            super(new LoggerProxy(), new Credentials("recorded", "recorded", "recorded"), () -> Long.MAX_VALUE);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public <RequestT extends AmazonWebServiceRequest, ResultT extends AmazonWebServiceResult<ResponseMetadata>> ResultT injectCredentialsAndInvoke(
+                final RequestT request,
+                final Function<RequestT, ResultT> requestFunction) {
+            final long startedAt = System.nanoTime();
+            try {
+                final ResultT response = delegate.injectCredentialsAndInvoke(request, requestFunction);
+                record(request, (System.nanoTime() - startedAt) / 1_000_000, response, null);
+                return response;
+            } catch (RuntimeException e) {
+                record(request, (System.nanoTime() - startedAt) / 1_000_000, null, e);
+                throw e;
+            }
+        }
+    }
+}
@@ -1,18 +1,29 @@
 package com.example.testing.wordpress;
 
 import com.amazonaws.services.ec2.model.Instance;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Builder;
 import software.amazon.cloudformation.proxy.StdCallbackContext;
 
 import java.util.List;
 
 @Builder
+@lombok.NoArgsConstructor
+@lombok.AllArgsConstructor
 @lombok.Getter
 @lombok.Setter
 @lombok.ToString
 @lombok.EqualsAndHashCode(callSuper = true)
 public class CallbackContext extends StdCallbackContext {
+    @JsonSerialize(using = InstanceJson.Serializer.class)
+    @JsonDeserialize(using = InstanceJson.Deserializer.class)
     private Instance instance;
     private Integer stabilizationRetriesRemaining;
     private List<String> instanceSecurityGroups;
+    private List<String> createdInstanceIds;
+    private List<String> createdSecurityGroupIds;
+    private String traceId;
+    private String rollbackCause;
+    private Integer rollbackRetriesRemaining;
 }
@@ -0,0 +1,226 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.retry.RetryUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide circuit breaker for the EC2 endpoint, one circuit per region and operation class.
+ * Each circuit tracks the outcome of the calls it saw in the last {@value #WINDOW_IN_MS} ms (at most
+ * {@value #WINDOW_SIZE} of them) and opens once at least {@value #MINIMUM_CALLS} calls are in the
+ * window and half or more of them failed. An open circuit rejects calls without going to EC2 until
+ * its open period is over, then lets a single probe through: the circuit closes if the probe
+ * succeeds, and reopens for twice as long (up to {@value #MAX_OPEN_IN_MS} ms) if it fails.
+ *
+ * Only calls that say something about the endpoint count: server errors, throttling and client-side
+ * failures such as timeouts are failures; any other service error is an answer, so a success.
+ * EC2 reports a capacity shortage for an instance type as a server error, but that is an answer
+ * about the type, not the endpoint, so it counts as a success too: otherwise the instance type
+ * fallback of a few creates would open the region's circuit for every create and delete.
+ * {@link RegionalClients} records every call; create and delete handlers check
+ * {@link #retryAfterMs} before their next step and come back later instead of blocking on a
+ * browned-out endpoint.
+ */
+public class CircuitBreaker {
+    static final int WINDOW_SIZE = 20;
+    static final int MINIMUM_CALLS = 10;
+    static final long WINDOW_IN_MS = 60_000;
+    static final long BASE_OPEN_IN_MS = 5_000;
+    static final long MAX_OPEN_IN_MS = 60_000;
+    private static final Set<String> CAPACITY_ERROR_CODES = new HashSet<>(Arrays.asList(
+            "InsufficientInstanceCapacity", "InsufficientHostCapacity", "Unsupported"));
+    private static final CircuitBreaker SHARED = new CircuitBreaker(() -> System.nanoTime() / 1_000_000);
+
+    public enum OperationClass {
+        DESCRIBE, MUTATE;
+
+        public static OperationClass of(final String operationName) {
+            return operationName.startsWith("describe") ? DESCRIBE : MUTATE;
+        }
+    }
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Thrown instead of making a call while the circuit for it is open.
+     */
+    public static final class OpenException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final long retryAfterMs;
+
+        OpenException(final String circuit, final long retryAfterMs) {
+            super("EC2 circuit " + circuit + " is open, retry in " + retryAfterMs + " ms");
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+    }
+
+    private final LongSupplier clockInMs;
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    CircuitBreaker(final LongSupplier clockInMs) {
+        this.clockInMs = clockInMs;
+    }
+
+    public static CircuitBreaker shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return how long to wait before any of the given operation classes may be called in the
+     * region, 0 if they all may be called now. Does not take the probe of a half-open circuit.
+     */
+    public long retryAfterMs(final String region, final OperationClass... operationClasses) {
+        long retryAfterMs = 0;
+        for (final OperationClass operationClass : operationClasses) {
+            retryAfterMs = Math.max(retryAfterMs, circuit(region, operationClass).retryAfterMs(clockInMs.getAsLong()));
+        }
+        return retryAfterMs;
+    }
+
+    /**
+     * Admits a call, taking the probe if the circuit is ready for one.
+     *
+     * @throws OpenException if the circuit is open, or half-open with its probe already out
+     */
+    public void acquire(final String region, final OperationClass operationClass) {
+        final Circuit circuit = circuit(region, operationClass);
+        final long retryAfterMs = circuit.acquire(clockInMs.getAsLong());
+        if (retryAfterMs > 0) {
+            throw new OpenException(region + "/" + operationClass, retryAfterMs);
+        }
+    }
+
+    public void onSuccess(final String region, final OperationClass operationClass) {
+        circuit(region, operationClass).record(clockInMs.getAsLong(), false);
+    }
+
+    /**
+     * Records a call that threw, as a failure if the exception means the endpoint is unhealthy.
+     */
+    public void onError(final String region, final OperationClass operationClass, final Throwable error) {
+        circuit(region, operationClass).record(clockInMs.getAsLong(), isEndpointFailure(error));
+    }
+
+    public State state(final String region, final OperationClass operationClass) {
+        return circuit(region, operationClass).state(clockInMs.getAsLong());
+    }
+
+    /**
+     * @return the callback delay for a handler to come back after, rounded up to whole seconds
+     */
+    public static int callbackDelaySeconds(final long retryAfterMs) {
+        return (int) Math.max(1, (retryAfterMs + 999) / 1000);
+    }
+
+    static boolean isEndpointFailure(final Throwable error) {
+        if (error instanceof AmazonServiceException) {
+            final AmazonServiceException serviceError = (AmazonServiceException) error;
+            if (CAPACITY_ERROR_CODES.contains(serviceError.getErrorCode())) {
+                return false;
+            }
+            return serviceError.getStatusCode() >= 500 || RetryUtils.isThrottlingException(serviceError);
+        }
+        return error instanceof SdkClientException;
+    }
+
+    private Circuit circuit(final String region, final OperationClass operationClass) {
+        return circuits.computeIfAbsent(region + "/" + operationClass, key -> new Circuit());
+    }
+
+    private static final class Circuit {
+        private final long[] outcomeTimes = new long[WINDOW_SIZE];
+        private final boolean[] outcomeFailed = new boolean[WINDOW_SIZE];
+        private int next;
+        private int recorded;
+        private State state = State.CLOSED;
+        private long openUntil;
+        private long openForMs = BASE_OPEN_IN_MS;
+        private long probeStartedAt;
+
+        private synchronized long retryAfterMs(final long now) {
+            if (state == State.OPEN) {
+                return Math.max(0, openUntil - now);
+            }
+            if (state == State.HALF_OPEN && !probeTimedOut(now)) {
+                return BASE_OPEN_IN_MS;
+            }
+            return 0;
+        }
+
+        private synchronized long acquire(final long now) {
+            final long retryAfterMs = retryAfterMs(now);
+            if (retryAfterMs == 0 && state != State.CLOSED) {
+                state = State.HALF_OPEN;
+                probeStartedAt = now;
+            }
+            return retryAfterMs;
+        }
+
+        private synchronized void record(final long now, final boolean failed) {
+            if (state == State.HALF_OPEN) {
+                if (failed) {
+                    openForMs = Math.min(MAX_OPEN_IN_MS, openForMs * 2);
+                    open(now);
+                } else {
+                    state = State.CLOSED;
+                    openForMs = BASE_OPEN_IN_MS;
+                    clearWindow();
+                }
+                return;
+            }
+            if (state == State.OPEN) {
+                // A call admitted before the circuit opened; its outcome is already accounted for.
+                return;
+            }
+            outcomeTimes[next] = now;
+            outcomeFailed[next] = failed;
+            next = (next + 1) % WINDOW_SIZE;
+            recorded = Math.min(WINDOW_SIZE, recorded + 1);
+
+            int calls = 0;
+            int failures = 0;
+            for (int i = 0; i < recorded; i++) {
+                if (now - outcomeTimes[i] <= WINDOW_IN_MS) {
+                    calls++;
+                    failures += outcomeFailed[i] ? 1 : 0;
+                }
+            }
+            if (calls >= MINIMUM_CALLS && failures * 2 >= calls) {
+                open(now);
+            }
+        }
+
+        private synchronized State state(final long now) {
+            return state == State.OPEN && now >= openUntil ? State.HALF_OPEN : state;
+        }
+
+        private void open(final long now) {
+            state = State.OPEN;
+            openUntil = now + openForMs;
+            clearWindow();
+        }
+
+        private void clearWindow() {
+            next = 0;
+            recorded = 0;
+        }
+
+        /**
+         * A probe whose outcome never came back must not hold the circuit half-open forever.
+         */
+        private boolean probeTimedOut(final long now) {
+            return now - probeStartedAt >= MAX_OPEN_IN_MS;
+        }
+    }
+}
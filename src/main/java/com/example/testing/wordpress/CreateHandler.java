@@ -1,10 +1,9 @@
 package com.example.testing.wordpress;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.ec2.model.AuthorizeSecurityGroupIngressRequest;
 import com.amazonaws.services.ec2.model.CreateSecurityGroupRequest;
-import com.amazonaws.services.ec2.model.DeleteSecurityGroupRequest;
 import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
 import com.amazonaws.services.ec2.model.DescribeInstancesResult;
 import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
@@ -14,33 +13,78 @@ import com.amazonaws.services.ec2.model.InstanceNetworkInterfaceSpecification;
 import com.amazonaws.services.ec2.model.IpPermission;
 import com.amazonaws.services.ec2.model.IpRange;
 import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.services.ec2.model.ResourceType;
 import com.amazonaws.services.ec2.model.RunInstancesRequest;
 import com.amazonaws.services.ec2.model.Subnet;
 import com.amazonaws.services.ec2.model.Tag;
 import com.amazonaws.services.ec2.model.TagSpecification;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.function.Function;
 
 public class CreateHandler extends BaseHandler<CallbackContext> {
-    private static final String SUPPORTED_REGION = "us-west-2";
-    private static final String WORDPRESS_AMI_ID = "ami-04fb0368671b6f138";
-    private static final String INSTANCE_TYPE = "m4.large";
+    static final String SECURITY_GROUP_DESCRIPTION_PREFIX = "Created for the test WordPress blog: ";
+    static final String CREATED_BY_TAG_KEY = "CreatedBy";
+    static final String CREATED_BY_TAG_VALUE = "Example::Testing::WordPress";
+    private static final String INSUFFICIENT_CAPACITY_ERROR_CODE = "InsufficientInstanceCapacity";
+    private static final String INSTANCE_NOT_FOUND_ERROR_CODE = "InvalidInstanceID.NotFound";
     private static final String SITE_NAME_TAG_KEY = "Name";
     private static final String AVAILABLE_INSTANCE_STATE = "running";
     private static final int NUMBER_OF_STATE_POLL_RETRIES = 60;
     private static final int POLL_RETRY_DELAY_IN_MS = 5000;
     private static final String TIMED_OUT_MESSAGE = "Timed out waiting for instance to become available.";
+    private static final int NUMBER_OF_ROLLBACK_RETRIES = 20;
+    private static final int ROLLBACK_RETRY_DELAY_IN_SECONDS = 30;
 
+    private final SiteIndex siteIndex;
+    private final InstanceTypeFallback instanceTypeFallback;
+    private final Sleeper sleeper;
+    private final LifecycleLog lifecycleLog = new LifecycleLog(CreateHandler.class);
+    private final ResourceModelValidator validator = ResourceModelValidator.fromSchema();
+    private final DescribeCoalescer describeCoalescer = DescribeCoalescer.shared();
+    private final LifecycleTrace lifecycleTrace = new LifecycleTrace("create");
+    private final CallRecorder callRecorder = new CallRecorder("create");
+    private final CircuitBreaker circuitBreaker;
     private AmazonWebServicesClientProxy clientProxy;
+    private Object caller;
+    private String region;
     private AmazonEC2 ec2Client;
 
+    public CreateHandler() {
+        this(SiteIndex.fromEnvironment());
+    }
+
+    CreateHandler(final SiteIndex siteIndex) {
+        this(siteIndex, InstanceTypeFallback.fromEnvironment());
+    }
+
+    CreateHandler(final SiteIndex siteIndex, final InstanceTypeFallback instanceTypeFallback) {
+        this(siteIndex, instanceTypeFallback, Sleeper.SYSTEM);
+    }
+
+    CreateHandler(final SiteIndex siteIndex, final InstanceTypeFallback instanceTypeFallback, final Sleeper sleeper) {
+        this(siteIndex, instanceTypeFallback, sleeper, CircuitBreaker.shared());
+    }
+
+    CreateHandler(final SiteIndex siteIndex,
+                  final InstanceTypeFallback instanceTypeFallback,
+                  final Sleeper sleeper,
+                  final CircuitBreaker circuitBreaker) {
+        this.siteIndex = siteIndex;
+        this.instanceTypeFallback = instanceTypeFallback;
+        this.sleeper = sleeper;
+        this.circuitBreaker = circuitBreaker;
+    }
+
     @Override
     public ProgressEvent<ResourceModel, CallbackContext> handleRequest(
             final AmazonWebServicesClientProxy proxy,
@@ -50,63 +94,183 @@ public class CreateHandler extends BaseHandler<CallbackContext> {
 
         final ResourceModel model = request.getDesiredResourceState();
 
-        clientProxy = proxy;
-        ec2Client = AmazonEC2ClientBuilder.standard().withRegion(SUPPORTED_REGION).build();
+        if (callbackContext == null) {
+            // The model doesn't change across re-invocations, so checking it once is enough.
+            final List<String> violations = validator.violations(model, true);
+            if (!violations.isEmpty()) {
+                return ProgressEvent.<ResourceModel, CallbackContext>builder()
+                        .status(OperationStatus.FAILED)
+                        .errorCode(HandlerErrorCode.InvalidRequest)
+                        .message(String.join("; ", violations))
+                        .build();
+            }
+        }
+
+        clientProxy = callRecorder.wrap(proxy);
+        caller = DescribeCoalescer.callerOf(request, clientProxy);
+        region = RegionalClients.regionOf(model);
+        ec2Client = RegionalClients.forRegion(region, circuitBreaker);
         final CallbackContext currentContext = callbackContext == null ?
                 CallbackContext.builder().stabilizationRetriesRemaining(NUMBER_OF_STATE_POLL_RETRIES).build() :
                 callbackContext;
+        if (currentContext.getTraceId() == null) {
+            currentContext.setTraceId(LifecycleTrace.newTraceId());
+        }
 
-        // This Lambda will continually be re-invoked with the current state of the instance, finally succeeding when state stabilizes.
-        return createInstanceAndUpdateProgress(model, currentContext);
+        lifecycleLog.begin(LifecycleLog.correlationIdOf(request));
+        lifecycleTrace.begin(currentContext.getTraceId());
+        callRecorder.begin(currentContext.getTraceId(), model);
+        try (LifecycleTrace.Span ignored = lifecycleTrace.span("invocation", model.getName())) {
+            final long retryAfterMs = circuitBreaker.retryAfterMs(region, nextOperationClasses(currentContext));
+            if (retryAfterMs > 0) {
+                return retryLater(model, currentContext, retryAfterMs);
+            }
+            // This Lambda will continually be re-invoked with the current state of the instance, finally succeeding when state stabilizes.
+            return createInstanceAndUpdateProgress(model, currentContext);
+        } catch (RuntimeException e) {
+            lifecycleLog.failure("create", e);
+            throw e;
+        } finally {
+            callRecorder.end();
+            lifecycleTrace.end();
+            lifecycleLog.end();
+        }
+    }
+
+    /**
+     * EC2 is browning out; come back with the given context rather than wait on timeouts or give up on the site.
+     */
+    private ProgressEvent<ResourceModel, CallbackContext> retryLater(ResourceModel model, CallbackContext callbackContext, long retryAfterMs) {
+        lifecycleLog.transition("circuit", "open", region);
+        return ProgressEvent.<ResourceModel, CallbackContext>builder()
+                .resourceModel(model)
+                .status(OperationStatus.IN_PROGRESS)
+                .callbackContext(callbackContext)
+                .callbackDelaySeconds(CircuitBreaker.callbackDelaySeconds(retryAfterMs))
+                .build();
+    }
+
+    /**
+     * @return the kinds of EC2 call the next step makes: a launch or rollback mutates, polling describes
+     */
+    private static CircuitBreaker.OperationClass[] nextOperationClasses(CallbackContext callbackContext) {
+        if (callbackContext.getRollbackCause() != null) {
+            return new CircuitBreaker.OperationClass[]{CircuitBreaker.OperationClass.MUTATE};
+        }
+        final Instance instanceStateSoFar = callbackContext.getInstance();
+        if (instanceStateSoFar == null || callbackContext.getStabilizationRetriesRemaining() == 0) {
+            return new CircuitBreaker.OperationClass[]{CircuitBreaker.OperationClass.DESCRIBE, CircuitBreaker.OperationClass.MUTATE};
+        } else if (instanceStateSoFar.getState().getName().equals(AVAILABLE_INSTANCE_STATE)) {
+            return new CircuitBreaker.OperationClass[0];
+        }
+        return new CircuitBreaker.OperationClass[]{CircuitBreaker.OperationClass.DESCRIBE};
     }
 
     private ProgressEvent<ResourceModel, CallbackContext> createInstanceAndUpdateProgress(ResourceModel model, CallbackContext callbackContext) {
         // This Lambda will continually be re-invoked with the current state of the instance, finally succeeding when state stabilizes.
         final Instance instanceStateSoFar = callbackContext.getInstance();
 
+        if (callbackContext.getRollbackCause() != null) {
+            return continueRollBack(model, callbackContext);
+        }
+
         if (callbackContext.getStabilizationRetriesRemaining() == 0) {
-            throw new RuntimeException(TIMED_OUT_MESSAGE);
+            return rollBack(model, callbackContext, new RuntimeException(TIMED_OUT_MESSAGE));
         }
 
         if (instanceStateSoFar == null) {
+            lifecycleLog.transition("create", "started", model.getName());
+            // Everything created from here on is recorded in the context so a later failure can undo it.
+            final CallbackContext createdSoFar = CallbackContext.builder()
+                    .stabilizationRetriesRemaining(NUMBER_OF_STATE_POLL_RETRIES)
+                    .createdInstanceIds(new ArrayList<>())
+                    .createdSecurityGroupIds(new ArrayList<>())
+                    .traceId(callbackContext.getTraceId())
+                    .build();
+            releaseInterruptedAttempt(callbackContext, createdSoFar);
+            try {
+                createdSoFar.setInstance(createEC2Instance(model, createdSoFar));
+            } catch (CircuitBreaker.OpenException e) {
+                // Refused before it reached EC2, so nothing failed: keep what was created so far and resume later.
+                return retryLater(model, createdSoFar, e.getRetryAfterMs());
+            } catch (RuntimeException e) {
+                return rollBack(model, createdSoFar, e);
+            }
             return ProgressEvent.<ResourceModel, CallbackContext>builder()
                     .resourceModel(model)
                     .status(OperationStatus.IN_PROGRESS)
-                    .callbackContext(CallbackContext.builder()
-                            .instance(createEC2Instance(model))
-                            .stabilizationRetriesRemaining(NUMBER_OF_STATE_POLL_RETRIES)
-                            .build())
+                    .callbackContext(createdSoFar)
                     .build();
         } else if (instanceStateSoFar.getState().getName().equals(AVAILABLE_INSTANCE_STATE)) {
+            lifecycleLog.transition("stabilize", AVAILABLE_INSTANCE_STATE, instanceStateSoFar.getInstanceId());
             model.setInstanceId(instanceStateSoFar.getInstanceId());
             model.setPublicIp(instanceStateSoFar.getPublicIpAddress());
+            if (siteIndex != null) {
+                try (LifecycleTrace.Span ignored = lifecycleTrace.span("site-index")) {
+                    siteIndex.put(SiteIndexEntry.fromInstance(instanceStateSoFar, model.getName())
+                            .toBuilder()
+                            .subnetId(model.getSubnetId())
+                            .region(region)
+                            .build());
+                }
+            }
             return ProgressEvent.<ResourceModel, CallbackContext>builder()
                     .resourceModel(model)
                     .status(OperationStatus.SUCCESS)
                     .build();
 
         } else {
-            try {
-                Thread.sleep(POLL_RETRY_DELAY_IN_MS);
+            lifecycleLog.transition("stabilize", instanceStateSoFar.getState().getName(), instanceStateSoFar.getInstanceId(),
+                    callbackContext.getStabilizationRetriesRemaining());
+            try (LifecycleTrace.Span ignored = lifecycleTrace.span("poll-delay")) {
+                sleeper.sleep(POLL_RETRY_DELAY_IN_MS);
             } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+                return rollBack(model, callbackContext, new RuntimeException(e));
+            }
+
+            Instance updatedInstance;
+            try (LifecycleTrace.Span ignored = lifecycleTrace.span("describe-instance", instanceStateSoFar.getInstanceId())) {
+                updatedInstance = updatedInstanceProgress(instanceStateSoFar.getInstanceId());
+            } catch (CircuitBreaker.OpenException e) {
+                return retryLater(model, callbackContext, e.getRetryAfterMs());
+            } catch (RuntimeException e) {
+                if (!isTransientDescribeFailure(e)) {
+                    return rollBack(model, callbackContext, e);
+                }
+                // One failed poll says nothing about the instance: keep its last known state and spend a retry.
+                lifecycleLog.transition("stabilize", "describe-failed", instanceStateSoFar.getInstanceId(),
+                        callbackContext.getStabilizationRetriesRemaining());
+                updatedInstance = instanceStateSoFar;
             }
             return ProgressEvent.<ResourceModel, CallbackContext>builder()
                     .resourceModel(model)
                     .status(OperationStatus.IN_PROGRESS)
                     .callbackContext(CallbackContext.builder()
-                            .instance(updatedInstanceProgress(instanceStateSoFar.getInstanceId()))
+                            .instance(updatedInstance)
                             .stabilizationRetriesRemaining(callbackContext.getStabilizationRetriesRemaining() - 1)
+                            .createdInstanceIds(callbackContext.getCreatedInstanceIds())
+                            .createdSecurityGroupIds(callbackContext.getCreatedSecurityGroupIds())
+                            .traceId(callbackContext.getTraceId())
                             .build())
                     .build();
         }
     }
 
-    private Instance createEC2Instance(ResourceModel model) {
-        final String securityGroupId = createSecurityGroupForInstance(model);
+    private Instance createEC2Instance(ResourceModel model, CallbackContext createdSoFar) {
+        final String amiId = WordPressAmis.forRegion(region);
+        final Subnet subnet;
+        try (LifecycleTrace.Span ignored = lifecycleTrace.span("subnet-lookup", model.getSubnetId())) {
+            subnet = getSubnet(model.getSubnetId());
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+
+        final String securityGroupId;
+        try (LifecycleTrace.Span ignored = lifecycleTrace.span("security-group", subnet.getVpcId())) {
+            securityGroupId = createSecurityGroupForInstance(model, subnet.getVpcId(), createdSoFar);
+        }
         final RunInstancesRequest runInstancesRequest = new RunInstancesRequest()
-                .withInstanceType(INSTANCE_TYPE)
-                .withImageId(WORDPRESS_AMI_ID)
+                .withImageId(amiId)
                 .withNetworkInterfaces(new InstanceNetworkInterfaceSpecification()
                         .withAssociatePublicIpAddress(true)
                         .withDeviceIndex(0)
@@ -114,39 +278,57 @@ public class CreateHandler extends BaseHandler<CallbackContext> {
                         .withSubnetId(model.getSubnetId()))
                 .withMaxCount(1)
                 .withMinCount(1)
-                .withTagSpecifications(buildTagFromSiteName(model.getName()));
-
-        try {
-            return clientProxy.injectCredentialsAndInvoke(runInstancesRequest, ec2Client::runInstances)
-                    .getReservation()
-                    .getInstances()
-                    .stream()
-                    .findFirst()
-                    .orElse(new Instance());
-        } catch (Throwable e) {
-            attemptToCleanUpSecurityGroup(securityGroupId);
-            throw new RuntimeException(e);
+                .withTagSpecifications(
+                        siteNameTags(model.getName(), ResourceType.Instance),
+                        siteNameTags(model.getName(), ResourceType.Volume),
+                        siteNameTags(model.getName(), ResourceType.NetworkInterface));
+
+        final Instance instance = launchWithInstanceTypeFallback(runInstancesRequest, subnet.getAvailabilityZone());
+        if (instance.getInstanceId() != null) {
+            createdSoFar.getCreatedInstanceIds().add(instance.getInstanceId());
         }
+        lifecycleLog.transition("launch", "launched", instance.getInstanceId());
+        return instance;
     }
 
-    private String createSecurityGroupForInstance(ResourceModel model) {
-        String vpcId;
-        try {
-            vpcId = getVpcIdFromSubnetId(model.getSubnetId());
-        } catch (Throwable e) {
-            throw new RuntimeException(e);
+    private Instance launchWithInstanceTypeFallback(RunInstancesRequest runInstancesRequest, String availabilityZone) {
+        AmazonServiceException lastCapacityError = null;
+        for (final String instanceType : instanceTypeFallback.candidates(availabilityZone)) {
+            try (LifecycleTrace.Span ignored = lifecycleTrace.span("launch", instanceType)) {
+                return clientProxy.injectCredentialsAndInvoke(runInstancesRequest.clone().withInstanceType(instanceType), ec2Client::runInstances)
+                        .getReservation()
+                        .getInstances()
+                        .stream()
+                        .findFirst()
+                        .orElse(new Instance());
+            } catch (AmazonServiceException e) {
+                if (!INSUFFICIENT_CAPACITY_ERROR_CODE.equals(e.getErrorCode())) {
+                    throw e;
+                }
+                // Remember the shortage so creates in this zone skip the type for a while, and move on.
+                lifecycleLog.transition("launch", "insufficient-capacity", instanceType);
+                instanceTypeFallback.recordInsufficientCapacity(availabilityZone, instanceType);
+                lastCapacityError = e;
+            }
         }
+        throw lastCapacityError;
+    }
 
+    private String createSecurityGroupForInstance(ResourceModel model, String vpcId, CallbackContext createdSoFar) {
         final String securityGroupName = model.getName() + "-" + UUID.randomUUID().toString();
 
         final CreateSecurityGroupRequest createSecurityGroupRequest = new CreateSecurityGroupRequest()
                 .withGroupName(securityGroupName)
-                .withDescription("Created for the test WordPress blog: " + model.getName())
-                .withVpcId(vpcId);
+                .withDescription(SECURITY_GROUP_DESCRIPTION_PREFIX + model.getName())
+                .withVpcId(vpcId)
+                .withTagSpecifications(siteNameTags(model.getName(), ResourceType.SecurityGroup)
+                        .withTags(new Tag().withKey(CREATED_BY_TAG_KEY).withValue(CREATED_BY_TAG_VALUE)));
 
         final String securityGroupId =
                 clientProxy.injectCredentialsAndInvoke(createSecurityGroupRequest, ec2Client::createSecurityGroup)
                         .getGroupId();
+        createdSoFar.getCreatedSecurityGroupIds().add(securityGroupId);
+        lifecycleLog.transition("security-group", "created", securityGroupId);
 
         final AuthorizeSecurityGroupIngressRequest authorizeSecurityGroupIngressRequest = new AuthorizeSecurityGroupIngressRequest()
                 .withGroupId(securityGroupId)
@@ -157,12 +339,12 @@ public class CreateHandler extends BaseHandler<CallbackContext> {
         return securityGroupId;
     }
 
-    private String getVpcIdFromSubnetId(String subnetId) throws Throwable {
+    private Subnet getSubnet(String subnetId) throws Throwable {
         final DescribeSubnetsRequest describeSubnetsRequest = new DescribeSubnetsRequest()
                 .withSubnetIds(subnetId);
 
         final DescribeSubnetsResult describeSubnetsResult =
-                clientProxy.injectCredentialsAndInvoke(describeSubnetsRequest, new Function<DescribeSubnetsRequest, DescribeSubnetsResult>() {
+                describeCoalescer.invoke(clientProxy, caller, region, describeSubnetsRequest, new Function<DescribeSubnetsRequest, DescribeSubnetsResult>() {
                     @Override
                     public DescribeSubnetsResult apply(DescribeSubnetsRequest describeSubnetsRequest) {
                         return ec2Client.describeSubnets(describeSubnetsRequest);
@@ -171,7 +353,6 @@ public class CreateHandler extends BaseHandler<CallbackContext> {
 
         return describeSubnetsResult.getSubnets()
                 .stream()
-                .map(Subnet::getVpcId)
                 .findFirst()
                 .orElseThrow(() -> {
                     throw new RuntimeException("Subnet " + subnetId + " not found");
@@ -192,9 +373,13 @@ public class CreateHandler extends BaseHandler<CallbackContext> {
                 .withIpv4Ranges(new IpRange().withCidrIp("0.0.0.0/0"));
     }
 
-    private TagSpecification buildTagFromSiteName(String siteName) {
+    /**
+     * Everything a site is made of is tagged in the call that creates it, so no CreateTags call (and
+     * no describe to find the volume and network interface IDs for one) is ever needed.
+     */
+    private TagSpecification siteNameTags(String siteName, ResourceType resourceType) {
         return new TagSpecification()
-                .withResourceType("instance")
+                .withResourceType(resourceType)
                 .withTags(new Tag().withKey(SITE_NAME_TAG_KEY).withValue(siteName));
     }
 
@@ -203,7 +388,7 @@ public class CreateHandler extends BaseHandler<CallbackContext> {
         DescribeInstancesResult describeInstancesResult;
 
         describeInstancesRequest = new DescribeInstancesRequest().withInstanceIds(instanceId);
-        describeInstancesResult = clientProxy.injectCredentialsAndInvoke(describeInstancesRequest, new Function<DescribeInstancesRequest, DescribeInstancesResult>() {
+        describeInstancesResult = describeCoalescer.invoke(clientProxy, caller, region, describeInstancesRequest, new Function<DescribeInstancesRequest, DescribeInstancesResult>() {
             @Override
             public DescribeInstancesResult apply(DescribeInstancesRequest describeInstancesRequest) {
                 return ec2Client.describeInstances(describeInstancesRequest);
@@ -217,8 +402,85 @@ public class CreateHandler extends BaseHandler<CallbackContext> {
                 .orElse(new Instance());
     }
 
-    private void attemptToCleanUpSecurityGroup(String securityGroupId) {
-        final DeleteSecurityGroupRequest deleteSecurityGroupRequest = new DeleteSecurityGroupRequest().withGroupId(securityGroupId);
-        clientProxy.injectCredentialsAndInvoke(deleteSecurityGroupRequest, ec2Client::deleteSecurityGroup);
+    /**
+     * A launch cut short by an open circuit leaves what it had already created in the context. That is released
+     * before starting over; whatever cannot be released yet stays recorded, so a later rollback still covers it.
+     */
+    private void releaseInterruptedAttempt(CallbackContext interrupted, CallbackContext createdSoFar) {
+        final List<String> instanceIds = orEmpty(interrupted.getCreatedInstanceIds());
+        final List<String> securityGroupIds = orEmpty(interrupted.getCreatedSecurityGroupIds());
+        if (instanceIds.isEmpty() && securityGroupIds.isEmpty()) {
+            return;
+        }
+        lifecycleLog.transition("create", "resumed");
+        try (LifecycleTrace.Span ignored = lifecycleTrace.span("release-interrupted")) {
+            if (!new CreateRollback(clientProxy, ec2Client, sleeper).rollBack(instanceIds, securityGroupIds).isEmpty()) {
+                createdSoFar.getCreatedInstanceIds().addAll(instanceIds);
+                createdSoFar.getCreatedSecurityGroupIds().addAll(securityGroupIds);
+            }
+        }
+    }
+
+    /**
+     * Throttling, server errors and lost connections are worth another poll, and so is an instance EC2 does not
+     * know about yet: DescribeInstances is eventually consistent right after RunInstances.
+     */
+    private static boolean isTransientDescribeFailure(RuntimeException e) {
+        return CircuitBreaker.isEndpointFailure(e)
+                || e instanceof AmazonServiceException && INSTANCE_NOT_FOUND_ERROR_CODE.equals(((AmazonServiceException) e).getErrorCode());
+    }
+
+    /**
+     * Releases what the create provisioned and fails with the cause. A security group cannot go until EC2 has let go
+     * of the terminated instance's network interface, which can take minutes, so whatever is still held after this
+     * invocation's retries is carried in the context and released on later invocations before failing.
+     */
+    private ProgressEvent<ResourceModel, CallbackContext> rollBack(ResourceModel model, CallbackContext createdSoFar, RuntimeException cause) {
+        lifecycleLog.transition("rollback", "started");
+        final List<Exception> failures = releaseCreated(createdSoFar);
+        if (failures.isEmpty()) {
+            throw cause;
+        }
+        return rollBackLater(model, CallbackContext.builder()
+                .rollbackCause(cause.getMessage() == null ? cause.toString() : cause.getMessage())
+                .rollbackRetriesRemaining(NUMBER_OF_ROLLBACK_RETRIES)
+                .createdInstanceIds(orEmpty(createdSoFar.getCreatedInstanceIds()))
+                .createdSecurityGroupIds(orEmpty(createdSoFar.getCreatedSecurityGroupIds()))
+                .traceId(createdSoFar.getTraceId())
+                .build());
+    }
+
+    private ProgressEvent<ResourceModel, CallbackContext> continueRollBack(ResourceModel model, CallbackContext rollingBack) {
+        final List<Exception> failures = releaseCreated(rollingBack);
+        final int retriesRemaining = rollingBack.getRollbackRetriesRemaining() - 1;
+        if (failures.isEmpty() || retriesRemaining == 0) {
+            lifecycleLog.transition("rollback", failures.isEmpty() ? "finished" : "abandoned");
+            final RuntimeException cause = new RuntimeException(rollingBack.getRollbackCause());
+            failures.forEach(cause::addSuppressed);
+            throw cause;
+        }
+        rollingBack.setRollbackRetriesRemaining(retriesRemaining);
+        return rollBackLater(model, rollingBack);
+    }
+
+    private ProgressEvent<ResourceModel, CallbackContext> rollBackLater(ResourceModel model, CallbackContext rollingBack) {
+        lifecycleLog.transition("rollback", "pending", model.getName(), rollingBack.getRollbackRetriesRemaining());
+        return ProgressEvent.<ResourceModel, CallbackContext>builder()
+                .resourceModel(model)
+                .status(OperationStatus.IN_PROGRESS)
+                .callbackContext(rollingBack)
+                .callbackDelaySeconds(ROLLBACK_RETRY_DELAY_IN_SECONDS)
+                .build();
+    }
+
+    private List<Exception> releaseCreated(CallbackContext createdSoFar) {
+        try (LifecycleTrace.Span ignored = lifecycleTrace.span("rollback")) {
+            return new CreateRollback(clientProxy, ec2Client, sleeper)
+                    .rollBack(orEmpty(createdSoFar.getCreatedInstanceIds()), orEmpty(createdSoFar.getCreatedSecurityGroupIds()));
+        }
+    }
+
+    private static List<String> orEmpty(List<String> resourceIds) {
+        return resourceIds == null ? Collections.emptyList() : resourceIds;
     }
 }
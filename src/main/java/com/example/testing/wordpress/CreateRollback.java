@@ -0,0 +1,112 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DeleteSecurityGroupRequest;
+import com.amazonaws.services.ec2.model.TerminateInstancesRequest;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tears down whatever a failed create managed to provision. Every resource is released on its own
+ * thread with bounded, exponentially backed-off retries, so instance capacity is handed back
+ * immediately and security groups go as soon as EC2 lets go of the instance's network interface
+ * (DependencyViolation until then). Anything still left after the retries is reported to the caller,
+ * which can run the rollback again later: releasing is idempotent, since a terminated instance and a
+ * deleted group both read as already gone.
+ *
+ * The retries only cover a few seconds. Letting go of the network interface can take minutes after
+ * termination, so waiting that out is left to the caller, across invocations; so is an open circuit,
+ * which is never retried here.
+ */
+public class CreateRollback {
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_IN_MS = 500;
+    private static final long MAX_BACKOFF_IN_MS = 8000;
+    private static final String INSTANCE_NOT_FOUND_ERROR_CODE = "InvalidInstanceID.NotFound";
+    private static final String GROUP_NOT_FOUND_ERROR_CODE = "InvalidGroup.NotFound";
+
+    private final AmazonWebServicesClientProxy clientProxy;
+    private final AmazonEC2 ec2Client;
+    private final Sleeper sleeper;
+
+    public CreateRollback(final AmazonWebServicesClientProxy clientProxy, final AmazonEC2 ec2Client) {
+        this(clientProxy, ec2Client, Sleeper.SYSTEM);
+    }
+
+    CreateRollback(final AmazonWebServicesClientProxy clientProxy, final AmazonEC2 ec2Client, final Sleeper sleeper) {
+        this.clientProxy = clientProxy;
+        this.ec2Client = ec2Client;
+        this.sleeper = sleeper;
+    }
+
+    /**
+     * @return the errors for resources that could not be released, empty when everything was cleaned up
+     */
+    public List<Exception> rollBack(final List<String> instanceIds, final List<String> securityGroupIds) {
+        final List<Exception> failures = new ArrayList<>();
+        if (instanceIds.isEmpty() && securityGroupIds.isEmpty()) {
+            return failures;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(instanceIds.size() + securityGroupIds.size());
+        try {
+            final List<Future<Void>> pending = new ArrayList<>();
+            instanceIds.forEach(instanceId -> pending.add(executor.submit(() ->
+                    withRetries(() -> terminateInstance(instanceId), INSTANCE_NOT_FOUND_ERROR_CODE))));
+            securityGroupIds.forEach(securityGroupId -> pending.add(executor.submit(() ->
+                    withRetries(() -> deleteSecurityGroup(securityGroupId), GROUP_NOT_FOUND_ERROR_CODE))));
+
+            for (final Future<Void> future : pending) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.add(e);
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return failures;
+    }
+
+    private Void withRetries(final Runnable call, final String alreadyGoneErrorCode) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                call.run();
+                return null;
+            } catch (CircuitBreaker.OpenException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                if (e instanceof AmazonServiceException
+                        && alreadyGoneErrorCode.equals(((AmazonServiceException) e).getErrorCode())) {
+                    return null;
+                }
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+            }
+            sleeper.sleep(Math.min(BASE_BACKOFF_IN_MS << (attempt - 1), MAX_BACKOFF_IN_MS));
+        }
+    }
+
+    private void terminateInstance(final String instanceId) {
+        final TerminateInstancesRequest terminateInstancesRequest = new TerminateInstancesRequest().withInstanceIds(instanceId);
+        clientProxy.injectCredentialsAndInvoke(terminateInstancesRequest, ec2Client::terminateInstances);
+    }
+
+    private void deleteSecurityGroup(final String securityGroupId) {
+        final DeleteSecurityGroupRequest deleteSecurityGroupRequest = new DeleteSecurityGroupRequest().withGroupId(securityGroupId);
+        clientProxy.injectCredentialsAndInvoke(deleteSecurityGroupRequest, ec2Client::deleteSecurityGroup);
+    }
+}
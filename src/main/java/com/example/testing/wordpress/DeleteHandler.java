@@ -1,12 +1,12 @@
 package com.example.testing.wordpress;
 
 import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.ec2.model.DeleteSecurityGroupRequest;
 import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
 import com.amazonaws.services.ec2.model.DescribeInstancesResult;
 import com.amazonaws.services.ec2.model.GroupIdentifier;
 import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
 import com.amazonaws.services.ec2.model.Reservation;
 import com.amazonaws.services.ec2.model.TerminateInstancesRequest;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
@@ -16,19 +16,47 @@ import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class DeleteHandler extends BaseHandler<CallbackContext> {
-    private static final String SUPPORTED_REGION = "us-west-2";
     private static final String DELETED_INSTANCE_STATE = "terminated";
+    private static final String TERMINATING_INSTANCE_STATE = "shutting-down";
     private static final int NUMBER_OF_STATE_POLL_RETRIES = 60;
     private static final int POLL_RETRY_DELAY_IN_MS = 5000;
     private static final String TIMED_OUT_MESSAGE = "Timed out waiting for instance to terminate.";
+    private final SiteIndex siteIndex;
+    private final Sleeper sleeper;
+    private final LifecycleLog lifecycleLog = new LifecycleLog(DeleteHandler.class);
+    private final DescribeCoalescer describeCoalescer = DescribeCoalescer.shared();
+    private final LifecycleTrace lifecycleTrace = new LifecycleTrace("delete");
+    private final CallRecorder callRecorder = new CallRecorder("delete");
+    private final CircuitBreaker circuitBreaker;
     private AmazonWebServicesClientProxy clientProxy;
+    private Object caller;
+    private String region;
     private AmazonEC2 ec2Client;
 
+    public DeleteHandler() {
+        this(SiteIndex.fromEnvironment());
+    }
+
+    DeleteHandler(final SiteIndex siteIndex) {
+        this(siteIndex, Sleeper.SYSTEM);
+    }
+
+    DeleteHandler(final SiteIndex siteIndex, final Sleeper sleeper) {
+        this(siteIndex, sleeper, CircuitBreaker.shared());
+    }
+
+    DeleteHandler(final SiteIndex siteIndex, final Sleeper sleeper, final CircuitBreaker circuitBreaker) {
+        this.siteIndex = siteIndex;
+        this.sleeper = sleeper;
+        this.circuitBreaker = circuitBreaker;
+    }
+
     @Override
     public ProgressEvent<ResourceModel, CallbackContext> handleRequest(
             final AmazonWebServicesClientProxy proxy,
@@ -37,14 +65,67 @@ public class DeleteHandler extends BaseHandler<CallbackContext> {
             final Logger logger) {
         final ResourceModel model = request.getDesiredResourceState();
 
-        clientProxy = proxy;
-        ec2Client = AmazonEC2ClientBuilder.standard().withRegion(SUPPORTED_REGION).build();
+        clientProxy = callRecorder.wrap(proxy);
+        caller = DescribeCoalescer.callerOf(request, clientProxy);
+        region = RegionalClients.regionOf(model);
+        ec2Client = RegionalClients.forRegion(region, circuitBreaker);
         final CallbackContext currentContext = callbackContext == null ?
                 CallbackContext.builder().stabilizationRetriesRemaining(NUMBER_OF_STATE_POLL_RETRIES).build() :
                 callbackContext;
+        if (currentContext.getTraceId() == null) {
+            currentContext.setTraceId(LifecycleTrace.newTraceId());
+        }
+
+        lifecycleLog.begin(LifecycleLog.correlationIdOf(request));
+        lifecycleTrace.begin(currentContext.getTraceId());
+        callRecorder.begin(currentContext.getTraceId(), model);
+        try (LifecycleTrace.Span ignored = lifecycleTrace.span("invocation", model.getInstanceId())) {
+            final long retryAfterMs = circuitBreaker.retryAfterMs(region, nextOperationClasses(currentContext));
+            if (retryAfterMs > 0) {
+                return retryLater(model, currentContext, retryAfterMs);
+            }
+            // This Lambda will continually be re-invoked with the current state of the instance, finally succeeding when state stabilizes.
+            return deleteInstanceAndUpdateProgress(model, currentContext);
+        } catch (CircuitBreaker.OpenException e) {
+            // A discover, terminate or poll refused before it reached EC2 changed nothing: run the same step again later.
+            return retryLater(model, currentContext, e.getRetryAfterMs());
+        } catch (RuntimeException e) {
+            lifecycleLog.failure("delete", e);
+            throw e;
+        } finally {
+            callRecorder.end();
+            lifecycleTrace.end();
+            lifecycleLog.end();
+        }
+    }
+
+    /**
+     * EC2 is browning out; come back with the given context rather than wait on timeouts.
+     */
+    private ProgressEvent<ResourceModel, CallbackContext> retryLater(ResourceModel model, CallbackContext callbackContext, long retryAfterMs) {
+        lifecycleLog.transition("circuit", "open", region);
+        return ProgressEvent.<ResourceModel, CallbackContext>builder()
+                .resourceModel(model)
+                .status(OperationStatus.IN_PROGRESS)
+                .callbackContext(callbackContext)
+                .callbackDelaySeconds(CircuitBreaker.callbackDelaySeconds(retryAfterMs))
+                .build();
+    }
 
-        // This Lambda will continually be re-invoked with the current state of the instance, finally succeeding when state stabilizes.
-        return deleteInstanceAndUpdateProgress(model, currentContext);
+    /**
+     * @return the kinds of EC2 call the next step makes: terminating and deleting security groups
+     * mutate, polling describes, and discovery does both
+     */
+    private static CircuitBreaker.OperationClass[] nextOperationClasses(CallbackContext callbackContext) {
+        if (callbackContext.getStabilizationRetriesRemaining() == 0) {
+            return new CircuitBreaker.OperationClass[0];
+        } else if (callbackContext.getInstanceSecurityGroups() == null) {
+            return new CircuitBreaker.OperationClass[]{CircuitBreaker.OperationClass.DESCRIBE, CircuitBreaker.OperationClass.MUTATE};
+        } else if (callbackContext.getInstance() == null
+                || callbackContext.getInstance().getState().getName().equals(DELETED_INSTANCE_STATE)) {
+            return new CircuitBreaker.OperationClass[]{CircuitBreaker.OperationClass.MUTATE};
+        }
+        return new CircuitBreaker.OperationClass[]{CircuitBreaker.OperationClass.DESCRIBE};
     }
 
     private ProgressEvent<ResourceModel, CallbackContext> deleteInstanceAndUpdateProgress(ResourceModel model, CallbackContext callbackContext) {
@@ -54,9 +135,15 @@ public class DeleteHandler extends BaseHandler<CallbackContext> {
         }
 
         if (callbackContext.getInstanceSecurityGroups() == null) {
-            final Instance currentInstanceState = currentInstanceState(model.getInstanceId());
+            final Instance currentInstanceState;
+            try (LifecycleTrace.Span ignored = lifecycleTrace.span("discover", model.getInstanceId())) {
+                currentInstanceState = currentInstanceState(model.getInstanceId());
+            }
+            lifecycleLog.transition("discover", currentInstanceState.getState().getName(), model.getInstanceId());
 
             if (DELETED_INSTANCE_STATE.equals(currentInstanceState.getState().getName())) {
+                lifecycleLog.transition("delete", "not-found", model.getInstanceId());
+                removeFromSiteIndex(model.getInstanceId());
                 return ProgressEvent.<ResourceModel, CallbackContext>builder()
                         .status(OperationStatus.FAILED)
                         .errorCode(HandlerErrorCode.NotFound)
@@ -69,51 +156,104 @@ public class DeleteHandler extends BaseHandler<CallbackContext> {
                     .map(GroupIdentifier::getGroupId)
                     .collect(Collectors.toList());
 
-            return ProgressEvent.<ResourceModel, CallbackContext>builder()
-                    .resourceModel(model)
-                    .status(OperationStatus.IN_PROGRESS)
-                    .callbackContext(CallbackContext.builder()
-                            .stabilizationRetriesRemaining(NUMBER_OF_STATE_POLL_RETRIES)
-                            .instanceSecurityGroups(instanceSecurityGroups)
-                            .build())
-                    .build();
+            // Discovery, terminate and the first state check all happen in this invocation, on the
+            // describe result already in hand. An instance that is already on its way down is left alone.
+            final Instance terminatingInstance = TERMINATING_INSTANCE_STATE.equals(currentInstanceState.getState().getName()) ?
+                    currentInstanceState :
+                    terminate(model);
+            return afterTerminate(model, terminatingInstance, instanceSecurityGroups, callbackContext.getTraceId());
         }
 
         if (callbackContext.getInstance() == null) {
-            return ProgressEvent.<ResourceModel, CallbackContext>builder()
-                    .resourceModel(model)
-                    .status(OperationStatus.IN_PROGRESS)
-                    .callbackContext(CallbackContext.builder()
-                            .instance(deleteInstance(model.getInstanceId()))
-                            .instanceSecurityGroups(callbackContext.getInstanceSecurityGroups())
-                            .stabilizationRetriesRemaining(NUMBER_OF_STATE_POLL_RETRIES)
-                            .build())
-                    .build();
+            // A lifecycle whose discovery ran in an invocation of its own, before the two were combined.
+            return afterTerminate(model, terminate(model), callbackContext.getInstanceSecurityGroups(), callbackContext.getTraceId());
         } else if (callbackContext.getInstance().getState().getName().equals(DELETED_INSTANCE_STATE)) {
-            callbackContext.getInstanceSecurityGroups().forEach(this::deleteSecurityGroup);
-            return ProgressEvent.<ResourceModel, CallbackContext>builder()
-                    .resourceModel(model)
-                    .status(OperationStatus.SUCCESS)
-                    .build();
+            return deleteSecurityGroupsAndComplete(model, callbackContext.getInstanceSecurityGroups(),
+                    callbackContext.getStabilizationRetriesRemaining(), callbackContext.getTraceId());
         } else {
-            try {
-                Thread.sleep(POLL_RETRY_DELAY_IN_MS);
+            lifecycleLog.transition("stabilize", callbackContext.getInstance().getState().getName(), model.getInstanceId(),
+                    callbackContext.getStabilizationRetriesRemaining());
+            try (LifecycleTrace.Span ignored = lifecycleTrace.span("poll-delay")) {
+                sleeper.sleep(POLL_RETRY_DELAY_IN_MS);
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
             }
+            final Instance updatedInstance;
+            try (LifecycleTrace.Span ignored = lifecycleTrace.span("describe-instance", model.getInstanceId())) {
+                updatedInstance = currentInstanceState(model.getInstanceId());
+            }
             return ProgressEvent.<ResourceModel, CallbackContext>builder()
                     .resourceModel(model)
                     .status(OperationStatus.IN_PROGRESS)
                     .callbackContext(CallbackContext.builder()
-                            .instance(currentInstanceState(model.getInstanceId()))
+                            .instance(updatedInstance)
                             .instanceSecurityGroups(callbackContext.getInstanceSecurityGroups())
                             .stabilizationRetriesRemaining(callbackContext.getStabilizationRetriesRemaining() - 1)
+                            .traceId(callbackContext.getTraceId())
                             .build())
                     .build();
         }
 
     }
 
+    private Instance terminate(ResourceModel model) {
+        lifecycleLog.transition("terminate", "requested", model.getInstanceId());
+        try (LifecycleTrace.Span ignored = lifecycleTrace.span("terminate", model.getInstanceId())) {
+            return deleteInstance(model.getInstanceId());
+        }
+    }
+
+    private ProgressEvent<ResourceModel, CallbackContext> afterTerminate(ResourceModel model,
+                                                                         Instance terminatingInstance,
+                                                                         List<String> instanceSecurityGroups,
+                                                                         String traceId) {
+        if (terminatingInstance.getState() != null && DELETED_INSTANCE_STATE.equals(terminatingInstance.getState().getName())) {
+            return deleteSecurityGroupsAndComplete(model, instanceSecurityGroups, NUMBER_OF_STATE_POLL_RETRIES, traceId);
+        }
+        return ProgressEvent.<ResourceModel, CallbackContext>builder()
+                .resourceModel(model)
+                .status(OperationStatus.IN_PROGRESS)
+                .callbackContext(CallbackContext.builder()
+                        .instance(terminatingInstance)
+                        .instanceSecurityGroups(instanceSecurityGroups)
+                        .stabilizationRetriesRemaining(NUMBER_OF_STATE_POLL_RETRIES)
+                        .traceId(traceId)
+                        .build())
+                .build();
+    }
+
+    /**
+     * The instance is gone by now. A delete refused by an open circuit leaves the groups not yet deleted in the
+     * context, so the retry picks up where this one stopped rather than rediscovering a terminated instance.
+     */
+    private ProgressEvent<ResourceModel, CallbackContext> deleteSecurityGroupsAndComplete(ResourceModel model,
+                                                                                          List<String> instanceSecurityGroups,
+                                                                                          int stabilizationRetriesRemaining,
+                                                                                          String traceId) {
+        try (LifecycleTrace.Span ignored = lifecycleTrace.span("security-group-delete")) {
+            for (int i = 0; i < instanceSecurityGroups.size(); i++) {
+                try {
+                    deleteSecurityGroup(instanceSecurityGroups.get(i));
+                } catch (CircuitBreaker.OpenException e) {
+                    return retryLater(model, CallbackContext.builder()
+                            .instance(new Instance()
+                                    .withInstanceId(model.getInstanceId())
+                                    .withState(new InstanceState().withName(DELETED_INSTANCE_STATE)))
+                            .instanceSecurityGroups(new ArrayList<>(instanceSecurityGroups.subList(i, instanceSecurityGroups.size())))
+                            .stabilizationRetriesRemaining(stabilizationRetriesRemaining)
+                            .traceId(traceId)
+                            .build(), e.getRetryAfterMs());
+                }
+            }
+        }
+        removeFromSiteIndex(model.getInstanceId());
+        lifecycleLog.transition("delete", "complete", model.getInstanceId());
+        return ProgressEvent.<ResourceModel, CallbackContext>builder()
+                .resourceModel(model)
+                .status(OperationStatus.SUCCESS)
+                .build();
+    }
+
     private Instance deleteInstance(String instanceId) {
         final TerminateInstancesRequest terminateInstancesRequest = new TerminateInstancesRequest().withInstanceIds(instanceId);
         return clientProxy.injectCredentialsAndInvoke(terminateInstancesRequest, ec2Client::terminateInstances)
@@ -129,7 +269,7 @@ public class DeleteHandler extends BaseHandler<CallbackContext> {
         DescribeInstancesResult describeInstancesResult;
 
         describeInstancesRequest = new DescribeInstancesRequest().withInstanceIds(instanceId);
-        describeInstancesResult = clientProxy.injectCredentialsAndInvoke(describeInstancesRequest, new Function<DescribeInstancesRequest, DescribeInstancesResult>() {
+        describeInstancesResult = describeCoalescer.invoke(clientProxy, caller, region, describeInstancesRequest, new Function<DescribeInstancesRequest, DescribeInstancesResult>() {
             @Override
             public DescribeInstancesResult apply(DescribeInstancesRequest describeInstancesRequest) {
                 return ec2Client.describeInstances(describeInstancesRequest);
@@ -146,5 +286,12 @@ public class DeleteHandler extends BaseHandler<CallbackContext> {
     private void deleteSecurityGroup(String securityGroupId) {
         final DeleteSecurityGroupRequest deleteSecurityGroupRequest = new DeleteSecurityGroupRequest().withGroupId(securityGroupId);
         clientProxy.injectCredentialsAndInvoke(deleteSecurityGroupRequest, ec2Client::deleteSecurityGroup);
+        lifecycleLog.transition("security-group", "deleted", securityGroupId);
+    }
+
+    private void removeFromSiteIndex(String instanceId) {
+        if (siteIndex != null) {
+            siteIndex.remove(instanceId);
+        }
     }
 }
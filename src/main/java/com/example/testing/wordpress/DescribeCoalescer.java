@@ -0,0 +1,149 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.AmazonWebServiceResult;
+import com.amazonaws.ResponseMetadata;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Single-flight layer in front of {@link AmazonWebServicesClientProxy#injectCredentialsAndInvoke} for
+ * read-only describe calls. While a call is in flight, identical calls wait for it and share its
+ * result instead of going to EC2 (and through the region's rate limiter) themselves. Nothing is
+ * cached: once the call returns, the next one goes out again.
+ *
+ * There is one coalescer per container, shared by every handler and invocation in it. Calls are
+ * identical when they are made for the same caller, to the same region, with equal requests. The
+ * EC2 model classes implement value equality over all of their fields (IDs, filters, paging
+ * tokens). The caller is the AWS account the request is for ({@link #callerOf}): describes within
+ * one account return the same resources whoever asks, and one account's result must never be
+ * handed to another. Each invocation gets its own client proxy and the proxy does not expose its
+ * credentials, so a request without an account ID falls back to the proxy itself and only shares
+ * with calls through that proxy. Shared results are the same objects for every caller, so callers
+ * must treat them as read-only.
+ */
+public class DescribeCoalescer {
+    private static final DescribeCoalescer SHARED = new DescribeCoalescer();
+
+    private final ConcurrentMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong collapsedCalls = new AtomicLong();
+
+    DescribeCoalescer() {
+    }
+
+    public static DescribeCoalescer shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return who a handler invocation describes for: the request's account, or the invocation's own
+     * proxy when the request carries no account ID
+     */
+    public static Object callerOf(final ResourceHandlerRequest<?> request, final AmazonWebServicesClientProxy proxy) {
+        final String awsAccountId = request.getAwsAccountId();
+        return awsAccountId == null || awsAccountId.isEmpty() ? proxy : awsAccountId;
+    }
+
+    public <RequestT extends AmazonWebServiceRequest, ResultT extends AmazonWebServiceResult<ResponseMetadata>> ResultT invoke(
+            final AmazonWebServicesClientProxy proxy,
+            final Object caller,
+            final String region,
+            final RequestT request,
+            final Function<RequestT, ResultT> requestFunction) {
+        calls.incrementAndGet();
+        final Key key = new Key(caller, region, request.clone());
+        final CompletableFuture<Object> call = new CompletableFuture<>();
+        final CompletableFuture<Object> leader = inFlight.putIfAbsent(key, call);
+        if (leader != null) {
+            collapsedCalls.incrementAndGet();
+            return awaitLeader(leader);
+        }
+
+        try {
+            final ResultT result = proxy.injectCredentialsAndInvoke(request, requestFunction);
+            call.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * @return the number of describe calls made through the coalescer
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * @return how many of those calls were answered by another caller's in-flight call rather than issued to EC2
+     */
+    public long getCollapsedCalls() {
+        return collapsedCalls.get();
+    }
+
+    /**
+     * @return how many calls actually went to EC2
+     */
+    public long getIssuedCalls() {
+        return calls.get() - collapsedCalls.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <ResultT> ResultT awaitLeader(final CompletableFuture<Object> leader) {
+        try {
+            return (ResultT) leader.get();
+        } catch (ExecutionException e) {
+            // The leader's failure is every follower's failure: same request, same moment.
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final class Key {
+        private final Object caller;
+        private final String region;
+        private final AmazonWebServiceRequest request;
+
+        private Key(final Object caller, final String region, final AmazonWebServiceRequest request) {
+            this.caller = caller;
+            this.region = region;
+            this.request = request;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) other;
+            return caller.equals(key.caller)
+                    && Objects.equals(region, key.region)
+                    && request.getClass() == key.request.getClass()
+                    && request.equals(key.request);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(caller, region, request.getClass(), request);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.Reservation;
+import lombok.Builder;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Batch form of {@link ReadHandler} for drift detection across many sites in one region. Instance
+ * IDs are resolved in chunks of {@value #CHUNK_SIZE}, one DescribeInstances call (plus pages) per
+ * chunk, with up to {@value #THREADS} chunks in flight. A fleet-wide check therefore costs one call
+ * per chunk rather than one per site. IDs go in an instance-id filter rather than InstanceIds so
+ * that one instance that no longer exists does not fail its whole chunk.
+ *
+ * Every requested ID gets the event ReadHandler would have returned for it: SUCCESS with the model
+ * refreshed from EC2, or FAILED with {@link HandlerErrorCode#NotFound} for an instance that is
+ * terminated or unknown. The site index is neither consulted nor updated; drift detection has to
+ * ask EC2.
+ */
+public class DriftBatchReader {
+    private static final int CHUNK_SIZE = 200;
+    private static final int THREADS = 4;
+    private static final String DELETED_INSTANCE_STATE = "terminated";
+
+    private final AmazonWebServicesClientProxy clientProxy;
+    private final AmazonEC2 ec2Client;
+    private final String region;
+    private final int chunkSize;
+
+    public DriftBatchReader(final AmazonWebServicesClientProxy clientProxy, final String region) {
+        this(clientProxy, RegionalClients.forRegion(region), region, CHUNK_SIZE);
+    }
+
+    DriftBatchReader(final AmazonWebServicesClientProxy clientProxy,
+                     final AmazonEC2 ec2Client,
+                     final String region,
+                     final int chunkSize) {
+        this.clientProxy = clientProxy;
+        this.ec2Client = ec2Client;
+        this.region = region;
+        this.chunkSize = chunkSize;
+    }
+
+    public Result read(final Collection<String> instanceIds) throws InterruptedException {
+        final List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(instanceIds));
+        final List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += chunkSize) {
+            chunks.add(distinctIds.subList(from, Math.min(from + chunkSize, distinctIds.size())));
+        }
+
+        final Map<String, Instance> liveInstances = new HashMap<>();
+        final List<Long> batchLatenciesInMs = new ArrayList<>();
+        if (!chunks.isEmpty()) {
+            final ExecutorService executor = Executors.newFixedThreadPool(Math.min(THREADS, chunks.size()));
+            try {
+                final List<Future<Batch>> pending = new ArrayList<>();
+                chunks.forEach(chunk -> pending.add(executor.submit(() -> describe(chunk))));
+                for (final Future<Batch> batch : pending) {
+                    liveInstances.putAll(batch.get().instances);
+                    batchLatenciesInMs.add(batch.get().latencyInMs);
+                }
+            } catch (ExecutionException e) {
+                // A chunk that cannot be read leaves drift unknown for all of its sites; don't guess.
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        final Map<String, ProgressEvent<ResourceModel, CallbackContext>> sites = new LinkedHashMap<>();
+        for (final String instanceId : distinctIds) {
+            final Instance instance = liveInstances.get(instanceId);
+            sites.put(instanceId, instance == null ?
+                    ProgressEvent.<ResourceModel, CallbackContext>builder()
+                            .status(OperationStatus.FAILED)
+                            .errorCode(HandlerErrorCode.NotFound)
+                            .build() :
+                    ProgressEvent.<ResourceModel, CallbackContext>builder()
+                            .resourceModel(SiteIndexEntry.fromInstance(instance).toBuilder().region(region).build().toModel())
+                            .status(OperationStatus.SUCCESS)
+                            .build());
+        }
+        return Result.builder()
+                .sites(Collections.unmodifiableMap(sites))
+                .batchLatenciesInMs(Collections.unmodifiableList(batchLatenciesInMs))
+                .build();
+    }
+
+    private Batch describe(final List<String> chunk) {
+        final long startedAt = System.nanoTime();
+        final Map<String, Instance> instances = new HashMap<>();
+        String nextToken = null;
+        do {
+            final DescribeInstancesRequest describeInstancesRequest = new DescribeInstancesRequest()
+                    .withFilters(new Filter().withName("instance-id").withValues(chunk))
+                    .withNextToken(nextToken);
+            final DescribeInstancesResult describeInstancesResult =
+                    clientProxy.injectCredentialsAndInvoke(describeInstancesRequest, new Function<DescribeInstancesRequest, DescribeInstancesResult>() {
+                        @Override
+                        public DescribeInstancesResult apply(DescribeInstancesRequest describeInstancesRequest) {
+                            return ec2Client.describeInstances(describeInstancesRequest);
+                        }
+                    });
+            describeInstancesResult.getReservations()
+                    .stream()
+                    .map(Reservation::getInstances)
+                    .flatMap(List::stream)
+                    .filter(instance -> instance.getState() != null && !DELETED_INSTANCE_STATE.equals(instance.getState().getName()))
+                    .forEach(instance -> instances.put(instance.getInstanceId(), instance));
+            nextToken = describeInstancesResult.getNextToken();
+        } while (nextToken != null);
+        return new Batch(instances, (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    private static final class Batch {
+        private final Map<String, Instance> instances;
+        private final long latencyInMs;
+
+        private Batch(final Map<String, Instance> instances, final long latencyInMs) {
+            this.instances = instances;
+            this.latencyInMs = latencyInMs;
+        }
+    }
+
+    @Builder
+    @lombok.Value
+    public static class Result {
+        /**
+         * Per requested instance ID, in request order, what a Read of it would have returned.
+         */
+        private Map<String, ProgressEvent<ResourceModel, CallbackContext>> sites;
+        /**
+         * Wall-clock time of each chunk's describe calls, in chunk order.
+         */
+        private List<Long> batchLatenciesInMs;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.services.ec2.model.GroupIdentifier;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written JSON form of the {@link Instance} carried in the callback context. The handlers only
+ * read the ID, state, public IP, subnet and security groups of that instance, so only those are
+ * written, with the streaming API; bean-mapping the whole SDK model (block devices, network
+ * interfaces, placement, ...) made the context several kilobytes and dominated its
+ * (de)serialization on every re-invocation.
+ *
+ * The reader also accepts the bean-mapped form written by earlier versions (state and security
+ * groups as objects) and skips fields it does not know, so contexts already in flight during a
+ * deployment still load.
+ */
+public final class InstanceJson {
+    private static final String INSTANCE_ID = "instanceId";
+    private static final String STATE = "state";
+    private static final String STATE_NAME = "name";
+    private static final String PUBLIC_IP_ADDRESS = "publicIpAddress";
+    private static final String SUBNET_ID = "subnetId";
+    private static final String SECURITY_GROUPS = "securityGroups";
+    private static final String GROUP_ID = "groupId";
+
+    private InstanceJson() {
+    }
+
+    public static class Serializer extends JsonSerializer<Instance> {
+        @Override
+        public void serialize(final Instance instance, final JsonGenerator generator, final SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            writeIfPresent(generator, INSTANCE_ID, instance.getInstanceId());
+            writeIfPresent(generator, STATE, instance.getState() == null ? null : instance.getState().getName());
+            writeIfPresent(generator, PUBLIC_IP_ADDRESS, instance.getPublicIpAddress());
+            writeIfPresent(generator, SUBNET_ID, instance.getSubnetId());
+            if (instance.getSecurityGroups() != null && !instance.getSecurityGroups().isEmpty()) {
+                generator.writeArrayFieldStart(SECURITY_GROUPS);
+                for (final GroupIdentifier group : instance.getSecurityGroups()) {
+                    generator.writeString(group.getGroupId());
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+
+        private static void writeIfPresent(final JsonGenerator generator, final String field, final String value) throws IOException {
+            if (value != null) {
+                generator.writeStringField(field, value);
+            }
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Instance> {
+        @Override
+        public Instance deserialize(final JsonParser parser, final DeserializationContext context) throws IOException {
+            final Instance instance = new Instance();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                switch (field) {
+                    case INSTANCE_ID:
+                        instance.setInstanceId(parser.getValueAsString());
+                        break;
+                    case STATE:
+                        instance.setState(new InstanceState().withName(value == JsonToken.START_OBJECT ?
+                                readField(parser, STATE_NAME) :
+                                parser.getValueAsString()));
+                        break;
+                    case PUBLIC_IP_ADDRESS:
+                        instance.setPublicIpAddress(parser.getValueAsString());
+                        break;
+                    case SUBNET_ID:
+                        instance.setSubnetId(parser.getValueAsString());
+                        break;
+                    case SECURITY_GROUPS:
+                        instance.setSecurityGroups(readSecurityGroups(parser));
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return instance;
+        }
+
+        private static List<GroupIdentifier> readSecurityGroups(final JsonParser parser) throws IOException {
+            if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            final List<GroupIdentifier> groups = new ArrayList<>();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    // A truncated context would otherwise keep this loop going until the invocation times out.
+                    throw new JsonParseException(parser, "Unexpected end of input in " + SECURITY_GROUPS);
+                }
+                groups.add(new GroupIdentifier().withGroupId(token == JsonToken.START_OBJECT ?
+                        readField(parser, GROUP_ID) :
+                        parser.getValueAsString()));
+            }
+            return groups;
+        }
+
+        /**
+         * Reads the named string field of the object the parser is at and leaves the parser at its end.
+         */
+        private static String readField(final JsonParser parser, final String name) throws IOException {
+            String value = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                parser.nextToken();
+                if (name.equals(field)) {
+                    value = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.testing.wordpress;
+
+import org.apache.logging.log4j.LogManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Ordered list of interchangeable instance types to launch the site on, plus a short-lived,
+ * container-wide memory of which types recently had no capacity in which availability zone. The
+ * types are configured through {@value #INSTANCE_TYPES_ENV} (comma separated, most preferred first);
+ * the defaults are all Xen-based so they boot the same AMIs as the original m4.large.
+ */
+public class InstanceTypeFallback {
+    static final String INSTANCE_TYPES_ENV = "WORDPRESS_INSTANCE_TYPES";
+    static final long CAPACITY_FAILURE_MEMORY_IN_MS = 5 * 60 * 1000;
+    static final List<String> DEFAULT_INSTANCE_TYPES = Arrays.asList("m4.large", "m4.xlarge", "t2.large");
+
+    private static InstanceTypeFallback shared;
+
+    private final List<String> instanceTypes;
+    private final LongSupplier clock;
+    private final Map<String, Long> unavailableUntil = new ConcurrentHashMap<>();
+
+    InstanceTypeFallback(final List<String> instanceTypes, final LongSupplier clock) {
+        if (instanceTypes.isEmpty()) {
+            throw new IllegalArgumentException("At least one instance type is required");
+        }
+        this.instanceTypes = Collections.unmodifiableList(new ArrayList<>(instanceTypes));
+        this.clock = clock;
+    }
+
+    public static synchronized InstanceTypeFallback fromEnvironment() {
+        if (shared == null) {
+            shared = new InstanceTypeFallback(instanceTypesOf(System.getenv(INSTANCE_TYPES_ENV)), System::currentTimeMillis);
+        }
+        return shared;
+    }
+
+    /**
+     * Parses a {@value #INSTANCE_TYPES_ENV} value. A value that names no type at all falls back to the
+     * defaults rather than failing every create in the container.
+     */
+    static List<String> instanceTypesOf(final String configured) {
+        if (configured == null || configured.trim().isEmpty()) {
+            return DEFAULT_INSTANCE_TYPES;
+        }
+        final List<String> instanceTypes = Arrays.stream(configured.split(","))
+                .map(String::trim)
+                .filter(instanceType -> !instanceType.isEmpty())
+                .collect(Collectors.toList());
+        if (instanceTypes.isEmpty()) {
+            LogManager.getLogger(InstanceTypeFallback.class).warn("{} names no instance type ('{}'), using {}",
+                    INSTANCE_TYPES_ENV, configured, DEFAULT_INSTANCE_TYPES);
+            return DEFAULT_INSTANCE_TYPES;
+        }
+        return instanceTypes;
+    }
+
+    /**
+     * The types to try in the given zone, in order. Types that recently ran out of capacity there are
+     * skipped; if every type did, the full list is returned since the shortage may well be over.
+     */
+    public List<String> candidates(final String availabilityZone) {
+        final long now = clock.getAsLong();
+        final List<String> available = instanceTypes
+                .stream()
+                .filter(instanceType -> unavailableUntil.getOrDefault(key(availabilityZone, instanceType), 0L) <= now)
+                .collect(Collectors.toList());
+        return available.isEmpty() ? instanceTypes : available;
+    }
+
+    public void recordInsufficientCapacity(final String availabilityZone, final String instanceType) {
+        unavailableUntil.put(key(availabilityZone, instanceType), clock.getAsLong() + CAPACITY_FAILURE_MEMORY_IN_MS);
+    }
+
+    private static String key(final String availabilityZone, final String instanceType) {
+        return availabilityZone + "/" + instanceType;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.testing.wordpress;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+import java.util.UUID;
+
+/**
+ * Structured log of the state transitions a handler goes through. Lines go out through log4j2's
+ * async loggers as reusable parameterized messages (see log4j2.xml and log4j2.component.properties),
+ * so a log point costs a ring buffer hand-off and no allocation on the handler thread. Keep
+ * arguments to strings and small ints for that to hold.
+ *
+ * Every line carries the lifecycle's correlation ID through the thread context. Sampling is decided
+ * from that ID, so a lifecycle is either logged across all of its invocations or not at all;
+ * failures are always logged.
+ */
+public class LifecycleLog {
+    static final String SAMPLE_RATE_ENV = "WORDPRESS_LOG_SAMPLE_RATE";
+    static final String CORRELATION_ID_KEY = "correlationId";
+    private static final int SAMPLE_BUCKETS = 10_000;
+    private static final double DEFAULT_SAMPLE_RATE = 1.0;
+
+    private final Logger log;
+    private final int sampledBuckets;
+    private boolean sampled;
+
+    public LifecycleLog(final Class<?> handlerClass) {
+        this(LogManager.getLogger(handlerClass), sampleRateFromEnvironment());
+    }
+
+    LifecycleLog(final Logger log, final double sampleRate) {
+        this.log = log;
+        this.sampledBuckets = (int) Math.round(Math.max(0, Math.min(1, sampleRate)) * SAMPLE_BUCKETS);
+    }
+
+    /**
+     * The ID that ties the invocations of one lifecycle together: CloudFormation's client request
+     * token, which stays the same across re-invocations of an operation.
+     */
+    public static String correlationIdOf(final ResourceHandlerRequest<?> request) {
+        return request.getClientRequestToken() == null ? UUID.randomUUID().toString() : request.getClientRequestToken();
+    }
+
+    public void begin(final String correlationId) {
+        ThreadContext.put(CORRELATION_ID_KEY, correlationId);
+        sampled = Math.floorMod(correlationId.hashCode(), SAMPLE_BUCKETS) < sampledBuckets;
+    }
+
+    public void end() {
+        ThreadContext.remove(CORRELATION_ID_KEY);
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    public void transition(final String phase, final String state) {
+        if (sampled) {
+            log.info("phase={} state={}", phase, state);
+        }
+    }
+
+    public void transition(final String phase, final String state, final String resourceId) {
+        if (sampled) {
+            log.info("phase={} state={} resource={}", phase, state, resourceId);
+        }
+    }
+
+    public void transition(final String phase, final String state, final String resourceId, final int retriesRemaining) {
+        if (sampled) {
+            log.info("phase={} state={} resource={} retriesRemaining={}", phase, state, resourceId, retriesRemaining);
+        }
+    }
+
+    public void failure(final String phase, final Throwable cause) {
+        log.warn("phase={} state=failed", phase, cause);
+    }
+
+    private static double sampleRateFromEnvironment() {
+        final String configured = System.getenv(SAMPLE_RATE_ENV);
+        return configured == null || configured.isEmpty() ? DEFAULT_SAMPLE_RATE : Double.parseDouble(configured);
+    }
+}
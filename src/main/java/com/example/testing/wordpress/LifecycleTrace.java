@@ -0,0 +1,157 @@
+package com.example.testing.wordpress;
+
+import org.apache.logging.log4j.LogManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Span timeline of a create or delete lifecycle, written in the Chrome trace event format so it
+ * opens in chrome://tracing, Perfetto or speedscope. The trace ID travels in the callback context, so
+ * every re-invocation of a lifecycle appends to the same file, {@code <traceId>.json} in the
+ * directory named by {@value #TRACE_DIR_ENV}; tracing is off when that is unset.
+ *
+ * Timestamps are wall-clock microseconds, so the gaps between invocations (CloudFormation's callback
+ * delay) show up on the timeline too. The file is a JSON array without its closing bracket, which
+ * the format explicitly allows so that events can be appended.
+ */
+public class LifecycleTrace {
+    static final String TRACE_DIR_ENV = "WORDPRESS_TRACE_DIR";
+    private static final long EPOCH_MICROS_AT_LOAD = System.currentTimeMillis() * 1000;
+    private static final long NANOS_AT_LOAD = System.nanoTime();
+    private static final Span NO_OP_SPAN = new Span(null, null, null, 0);
+
+    private final String category;
+    private final Path directory;
+    private final LongSupplier clockInMicros;
+    private final List<String> pendingEvents = new ArrayList<>();
+    private String traceId;
+
+    public LifecycleTrace(final String category) {
+        this(category, directoryFromEnvironment(), LifecycleTrace::nowInMicros);
+    }
+
+    LifecycleTrace(final String category, final Path directory, final LongSupplier clockInMicros) {
+        this.category = category;
+        this.directory = directory;
+        this.clockInMicros = clockInMicros;
+    }
+
+    public static String newTraceId() {
+        return UUID.randomUUID().toString();
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    public void begin(final String traceId) {
+        this.traceId = traceId;
+        pendingEvents.clear();
+    }
+
+    /**
+     * Starts a span that ends when it is closed; use with try-with-resources.
+     */
+    public Span span(final String name) {
+        return span(name, null);
+    }
+
+    public Span span(final String name, final String resourceId) {
+        return isEnabled() ? new Span(this, name, resourceId, clockInMicros.getAsLong()) : NO_OP_SPAN;
+    }
+
+    /**
+     * Appends the spans of this invocation to the trace file. A trace that cannot be written is
+     * dropped rather than failing the handler.
+     */
+    public void end() {
+        if (!isEnabled() || pendingEvents.isEmpty()) {
+            return;
+        }
+        final Path traceFile = directory.resolve(traceId + ".json");
+        final StringBuilder events = new StringBuilder();
+        if (!Files.exists(traceFile)) {
+            events.append("[\n");
+        }
+        pendingEvents.forEach(event -> events.append(event).append(",\n"));
+        pendingEvents.clear();
+        try {
+            Files.createDirectories(directory);
+            Files.write(traceFile, events.toString().getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LogManager.getLogger(LifecycleTrace.class).warn("Dropping trace {}", traceId, e);
+        }
+    }
+
+    private void record(final String name, final String resourceId, final long startInMicros) {
+        final StringBuilder event = new StringBuilder()
+                .append("{\"name\":\"").append(escape(name))
+                .append("\",\"cat\":\"").append(escape(category))
+                .append("\",\"ph\":\"X\",\"ts\":").append(startInMicros)
+                .append(",\"dur\":").append(Math.max(0, clockInMicros.getAsLong() - startInMicros))
+                .append(",\"pid\":1,\"tid\":").append(Thread.currentThread().getId())
+                .append(",\"args\":{\"traceId\":\"").append(escape(traceId)).append('"');
+        if (resourceId != null) {
+            event.append(",\"resource\":\"").append(escape(resourceId)).append('"');
+        }
+        pendingEvents.add(event.append("}}").toString());
+    }
+
+    private static String escape(final String value) {
+        if (value == null) {
+            return "";
+        }
+        final StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static Path directoryFromEnvironment() {
+        final String configured = System.getenv(TRACE_DIR_ENV);
+        return configured == null || configured.isEmpty() ? null : Paths.get(configured);
+    }
+
+    private static long nowInMicros() {
+        return EPOCH_MICROS_AT_LOAD + (System.nanoTime() - NANOS_AT_LOAD) / 1000;
+    }
+
+    public static final class Span implements AutoCloseable {
+        private final LifecycleTrace trace;
+        private final String name;
+        private final String resourceId;
+        private final long startInMicros;
+
+        private Span(final LifecycleTrace trace, final String name, final String resourceId, final long startInMicros) {
+            this.trace = trace;
+            this.name = name;
+            this.resourceId = resourceId;
+            this.startInMicros = startInMicros;
+        }
+
+        @Override
+        public void close() {
+            if (trace != null) {
+                trace.record(name, resourceId, startInMicros);
+            }
+        }
+    }
+}
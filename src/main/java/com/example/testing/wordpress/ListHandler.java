@@ -1,15 +1,32 @@
 package com.example.testing.wordpress;
 
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.Reservation;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class ListHandler extends BaseHandler<CallbackContext> {
+    private final SiteIndex siteIndex;
+    private final DescribeCoalescer describeCoalescer = DescribeCoalescer.shared();
+
+    public ListHandler() {
+        this(SiteIndex.fromEnvironment());
+    }
+
+    ListHandler(final SiteIndex siteIndex) {
+        this.siteIndex = siteIndex;
+    }
 
     @Override
     public ProgressEvent<ResourceModel, CallbackContext> handleRequest(
@@ -18,12 +35,58 @@ public class ListHandler extends BaseHandler<CallbackContext> {
         final CallbackContext callbackContext,
         final Logger logger) {
 
-        final List<ResourceModel> models = new ArrayList<>();
+        // The same rule Create, Read and Delete use, not the stack's region: a site created without a Region
+        // lives in the default region wherever its stack is.
+        final String region = RegionalClients.regionOf(request.getDesiredResourceState());
+        final AmazonEC2 ec2Client = RegionalClients.forRegion(region);
+        final Function<DescribeInstancesRequest, DescribeInstancesResult> describeInstances = describeInstancesRequest ->
+            describeCoalescer.invoke(proxy, DescribeCoalescer.callerOf(request, proxy), region, describeInstancesRequest, new Function<DescribeInstancesRequest, DescribeInstancesResult>() {
+                @Override
+                public DescribeInstancesResult apply(DescribeInstancesRequest describeInstancesRequest) {
+                    return ec2Client.describeInstances(describeInstancesRequest);
+                }
+            });
+
+        if (siteIndex != null) {
+            // Reconciliation is amortized across List calls so the index never drifts far from EC2. It is always
+            // due in a container that has not reconciled the region yet, so a cold index is filled from EC2 first.
+            if (siteIndex.isReconcileDue(region)) {
+                siteIndex.reconcile(region, describeInstances);
+            }
+            return ProgressEvent.<ResourceModel, CallbackContext>builder()
+                .resourceModels(siteIndex.entries()
+                    .stream()
+                    .filter(entry -> region.equals(entry.getRegion()))
+                    .map(SiteIndexEntry::toModel)
+                    .collect(Collectors.toList()))
+                .status(OperationStatus.SUCCESS)
+                .build();
+        }
+
+        if (!WordPressAmis.isSupported(region)) {
+            return ProgressEvent.<ResourceModel, CallbackContext>builder()
+                .resourceModels(Collections.emptyList())
+                .status(OperationStatus.SUCCESS)
+                .build();
+        }
+
+        final DescribeInstancesRequest describeInstancesRequest = new DescribeInstancesRequest()
+            .withFilters(
+                new Filter().withName("image-id").withValues(WordPressAmis.forRegion(region)),
+                new Filter().withName("instance-state-name").withValues("pending", "running"))
+            .withNextToken(request.getNextToken());
+        final DescribeInstancesResult describeInstancesResult = describeInstances.apply(describeInstancesRequest);
 
-        // TODO : put your code here
+        final List<ResourceModel> models = describeInstancesResult.getReservations()
+            .stream()
+            .map(Reservation::getInstances)
+            .flatMap(List::stream)
+            .map(instance -> SiteIndexEntry.fromInstance(instance).toBuilder().region(region).build().toModel())
+            .collect(Collectors.toList());
 
         return ProgressEvent.<ResourceModel, CallbackContext>builder()
             .resourceModels(models)
+            .nextToken(describeInstancesResult.getNextToken())
             .status(OperationStatus.SUCCESS)
             .build();
     }
@@ -0,0 +1,138 @@
+package com.example.testing.wordpress;
+
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
+import software.amazon.cloudformation.proxy.Logger;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Provisions the same site into several regions at once. Every region runs its own create
+ * lifecycle on its own thread, with its own handler, callback context (and so its own
+ * stabilization budget) and its own rate-limited client from {@link RegionalClients}, so the total
+ * time is that of the slowest region rather than the sum of all of them. A failure in one region
+ * does not stop the others; it is reported in that region's result.
+ *
+ * Between invocations a region waits the callback delay its handler asked for, as CloudFormation
+ * would, so a region whose circuit is open backs off instead of spinning. A region that has not
+ * finished after {@value #REGION_DEADLINE_IN_MS} ms fails, and whatever its create had provisioned
+ * so far is rolled back.
+ */
+public class MultiRegionProvisioner {
+    static final long REGION_DEADLINE_IN_MS = 30 * 60 * 1000;
+    private static final String TIMED_OUT_MESSAGE = "Timed out provisioning the site in ";
+
+    private final AmazonWebServicesClientProxy proxy;
+    private final Logger logger;
+    private final Supplier<CreateHandler> createHandlers;
+    private final Sleeper sleeper;
+    private final LongSupplier clockInMs;
+
+    public MultiRegionProvisioner(final AmazonWebServicesClientProxy proxy, final Logger logger) {
+        this(proxy, logger, CreateHandler::new);
+    }
+
+    MultiRegionProvisioner(final AmazonWebServicesClientProxy proxy, final Logger logger, final Supplier<CreateHandler> createHandlers) {
+        this(proxy, logger, createHandlers, Sleeper.SYSTEM, System::currentTimeMillis);
+    }
+
+    MultiRegionProvisioner(final AmazonWebServicesClientProxy proxy,
+                           final Logger logger,
+                           final Supplier<CreateHandler> createHandlers,
+                           final Sleeper sleeper,
+                           final LongSupplier clockInMs) {
+        this.proxy = proxy;
+        this.logger = logger;
+        this.createHandlers = createHandlers;
+        this.sleeper = sleeper;
+        this.clockInMs = clockInMs;
+    }
+
+    /**
+     * @param name the site name, shared by every region
+     * @param subnetIdsByRegion the subnet to launch into for each target region
+     * @return the final progress event of each region's create, in the order the regions were given
+     */
+    public Map<String, ProgressEvent<ResourceModel, CallbackContext>> provision(final String name, final Map<String, String> subnetIdsByRegion) {
+        final Map<String, ProgressEvent<ResourceModel, CallbackContext>> results = new LinkedHashMap<>();
+        if (subnetIdsByRegion.isEmpty()) {
+            return results;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(subnetIdsByRegion.size());
+        try {
+            final Map<String, Future<ProgressEvent<ResourceModel, CallbackContext>>> pending = new LinkedHashMap<>();
+            subnetIdsByRegion.forEach((region, subnetId) -> pending.put(region, executor.submit(() ->
+                    provisionInRegion(ResourceModel.builder()
+                            .name(name)
+                            .subnetId(subnetId)
+                            .region(region)
+                            .build()))));
+
+            for (final Map.Entry<String, Future<ProgressEvent<ResourceModel, CallbackContext>>> regionResult : pending.entrySet()) {
+                try {
+                    results.put(regionResult.getKey(), regionResult.getValue().get());
+                } catch (ExecutionException e) {
+                    results.put(regionResult.getKey(), ProgressEvent.defaultFailureHandler(e.getCause(), HandlerErrorCode.GeneralServiceException));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private ProgressEvent<ResourceModel, CallbackContext> provisionInRegion(final ResourceModel model) throws InterruptedException {
+        // Handlers keep per-invocation state in fields, so each region gets its own instance.
+        final CreateHandler handler = createHandlers.get();
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .region(model.getRegion())
+                .build();
+
+        final long deadline = clockInMs.getAsLong() + REGION_DEADLINE_IN_MS;
+        CallbackContext callbackContext = null;
+        ProgressEvent<ResourceModel, CallbackContext> progress;
+        while (true) {
+            progress = handler.handleRequest(proxy, request, callbackContext, logger);
+            callbackContext = progress.getCallbackContext();
+            if (progress.getStatus() != OperationStatus.IN_PROGRESS) {
+                return progress;
+            }
+            final long callbackDelayInMs = progress.getCallbackDelaySeconds() * 1000L;
+            if (clockInMs.getAsLong() + callbackDelayInMs >= deadline) {
+                return timedOut(model.getRegion(), callbackContext);
+            }
+            sleeper.sleep(callbackDelayInMs);
+        }
+    }
+
+    private ProgressEvent<ResourceModel, CallbackContext> timedOut(final String region, final CallbackContext callbackContext) {
+        final RuntimeException timeout = new RuntimeException(TIMED_OUT_MESSAGE + region);
+        if (callbackContext != null) {
+            new CreateRollback(proxy, RegionalClients.forRegion(region), sleeper)
+                    .rollBack(orEmpty(callbackContext.getCreatedInstanceIds()), orEmpty(callbackContext.getCreatedSecurityGroupIds()))
+                    .forEach(timeout::addSuppressed);
+        }
+        return ProgressEvent.defaultFailureHandler(timeout, HandlerErrorCode.NotStabilized);
+    }
+
+    private static List<String> orEmpty(final List<String> resourceIds) {
+        return resourceIds == null ? Collections.emptyList() : resourceIds;
+    }
+}
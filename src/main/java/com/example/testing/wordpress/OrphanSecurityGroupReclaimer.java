@@ -0,0 +1,231 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DeleteSecurityGroupRequest;
+import com.amazonaws.services.ec2.model.DescribeNetworkInterfacesRequest;
+import com.amazonaws.services.ec2.model.DescribeNetworkInterfacesResult;
+import com.amazonaws.services.ec2.model.DescribeSecurityGroupsRequest;
+import com.amazonaws.services.ec2.model.DescribeSecurityGroupsResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.GroupIdentifier;
+import com.amazonaws.services.ec2.model.NetworkInterface;
+import com.amazonaws.services.ec2.model.SecurityGroup;
+import lombok.Builder;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Finds and deletes security groups leaked by failed creates. A group is a candidate when it was
+ * created by this provider: it carries the {@link CreateHandler#CREATED_BY_TAG_KEY} tag, its
+ * description starts with {@link CreateHandler#SECURITY_GROUP_DESCRIPTION_PREFIX} and its name is
+ * {@code <site name>-<UUID>}. A group that only looks like one of ours, such as one made by hand or
+ * by another tool, is never touched. A candidate is an orphan when no network interface uses it.
+ *
+ * A create makes its group a few seconds before it launches the instance that uses it. To avoid
+ * deleting a group in that window, orphans are checked a second time after a grace period, and
+ * only groups that are still unused are deleted. Deletes run in parallel under their own rate
+ * limit, on top of the region's client rate limit, so reclaiming never takes the whole region's
+ * request budget from the handlers. A dry run only reports what would be deleted.
+ */
+public class OrphanSecurityGroupReclaimer {
+    private static final Pattern GENERATED_GROUP_NAME =
+            Pattern.compile(".+-[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final String GROUP_NOT_FOUND_ERROR_CODE = "InvalidGroup.NotFound";
+    private static final int PAGE_SIZE = 1000;
+    private static final int GROUP_IDS_PER_FILTER = 200;
+    private static final int DELETE_THREADS = 4;
+    private static final double DELETES_PER_SECOND = 5;
+    private static final long GRACE_PERIOD_IN_MS = 60_000;
+
+    private final AmazonWebServicesClientProxy clientProxy;
+    private final AmazonEC2 ec2Client;
+    private final RateLimiter deleteRateLimiter;
+    private final long gracePeriodInMs;
+    private final Sleeper sleeper;
+
+    public OrphanSecurityGroupReclaimer(final AmazonWebServicesClientProxy clientProxy, final AmazonEC2 ec2Client) {
+        this(clientProxy, ec2Client, new RateLimiter(DELETES_PER_SECOND), GRACE_PERIOD_IN_MS, Sleeper.SYSTEM);
+    }
+
+    OrphanSecurityGroupReclaimer(final AmazonWebServicesClientProxy clientProxy,
+                                 final AmazonEC2 ec2Client,
+                                 final RateLimiter deleteRateLimiter,
+                                 final long gracePeriodInMs,
+                                 final Sleeper sleeper) {
+        this.clientProxy = clientProxy;
+        this.ec2Client = ec2Client;
+        this.deleteRateLimiter = deleteRateLimiter;
+        this.gracePeriodInMs = gracePeriodInMs;
+        this.sleeper = sleeper;
+    }
+
+    public Report reclaim(final boolean dryRun) throws InterruptedException {
+        final List<String> candidates = findCandidates();
+        final List<String> orphans = unused(candidates);
+        if (dryRun || orphans.isEmpty()) {
+            return Report.builder()
+                    .dryRun(dryRun)
+                    .candidates(candidates)
+                    .orphans(orphans)
+                    .build();
+        }
+
+        sleeper.sleep(gracePeriodInMs);
+        final List<String> stillOrphaned = unused(orphans);
+        final Map<String, String> failures = new LinkedHashMap<>();
+        final List<String> deleted = deleteAll(stillOrphaned, failures);
+        return Report.builder()
+                .dryRun(false)
+                .candidates(candidates)
+                .orphans(stillOrphaned)
+                .deleted(deleted)
+                .failures(failures)
+                .build();
+    }
+
+    private List<String> findCandidates() {
+        final List<String> candidates = new ArrayList<>();
+        String nextToken = null;
+        do {
+            final DescribeSecurityGroupsRequest describeSecurityGroupsRequest = new DescribeSecurityGroupsRequest()
+                    .withFilters(
+                            new Filter().withName("tag:" + CreateHandler.CREATED_BY_TAG_KEY).withValues(CreateHandler.CREATED_BY_TAG_VALUE),
+                            new Filter().withName("description").withValues(CreateHandler.SECURITY_GROUP_DESCRIPTION_PREFIX + "*"))
+                    .withMaxResults(PAGE_SIZE)
+                    .withNextToken(nextToken);
+            final DescribeSecurityGroupsResult describeSecurityGroupsResult =
+                    clientProxy.injectCredentialsAndInvoke(describeSecurityGroupsRequest, new Function<DescribeSecurityGroupsRequest, DescribeSecurityGroupsResult>() {
+                        @Override
+                        public DescribeSecurityGroupsResult apply(DescribeSecurityGroupsRequest describeSecurityGroupsRequest) {
+                            return ec2Client.describeSecurityGroups(describeSecurityGroupsRequest);
+                        }
+                    });
+            describeSecurityGroupsResult.getSecurityGroups()
+                    .stream()
+                    .filter(OrphanSecurityGroupReclaimer::isCreatedByProvider)
+                    .filter(securityGroup -> GENERATED_GROUP_NAME.matcher(securityGroup.getGroupName()).matches())
+                    .map(SecurityGroup::getGroupId)
+                    .forEach(candidates::add);
+            nextToken = describeSecurityGroupsResult.getNextToken();
+        } while (nextToken != null);
+        return candidates;
+    }
+
+    private static boolean isCreatedByProvider(final SecurityGroup securityGroup) {
+        return securityGroup.getTags()
+                .stream()
+                .anyMatch(tag -> CreateHandler.CREATED_BY_TAG_KEY.equals(tag.getKey())
+                        && CreateHandler.CREATED_BY_TAG_VALUE.equals(tag.getValue()));
+    }
+
+    private List<String> unused(final List<String> securityGroupIds) {
+        final Set<String> inUse = new HashSet<>();
+        for (int from = 0; from < securityGroupIds.size(); from += GROUP_IDS_PER_FILTER) {
+            final List<String> chunk = securityGroupIds.subList(from, Math.min(from + GROUP_IDS_PER_FILTER, securityGroupIds.size()));
+            String nextToken = null;
+            do {
+                final DescribeNetworkInterfacesRequest describeNetworkInterfacesRequest = new DescribeNetworkInterfacesRequest()
+                        .withFilters(new Filter().withName("group-id").withValues(chunk))
+                        .withMaxResults(PAGE_SIZE)
+                        .withNextToken(nextToken);
+                final DescribeNetworkInterfacesResult describeNetworkInterfacesResult =
+                        clientProxy.injectCredentialsAndInvoke(describeNetworkInterfacesRequest, new Function<DescribeNetworkInterfacesRequest, DescribeNetworkInterfacesResult>() {
+                            @Override
+                            public DescribeNetworkInterfacesResult apply(DescribeNetworkInterfacesRequest describeNetworkInterfacesRequest) {
+                                return ec2Client.describeNetworkInterfaces(describeNetworkInterfacesRequest);
+                            }
+                        });
+                describeNetworkInterfacesResult.getNetworkInterfaces()
+                        .stream()
+                        .map(NetworkInterface::getGroups)
+                        .flatMap(List::stream)
+                        .map(GroupIdentifier::getGroupId)
+                        .forEach(inUse::add);
+                nextToken = describeNetworkInterfacesResult.getNextToken();
+            } while (nextToken != null);
+        }
+        return securityGroupIds
+                .stream()
+                .filter(securityGroupId -> !inUse.contains(securityGroupId))
+                .collect(Collectors.toList());
+    }
+
+    private List<String> deleteAll(final List<String> securityGroupIds, final Map<String, String> failures) {
+        final List<String> deleted = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(DELETE_THREADS, securityGroupIds.size()));
+        try {
+            final Map<String, Future<Void>> pending = new LinkedHashMap<>();
+            securityGroupIds.forEach(securityGroupId -> pending.put(securityGroupId, executor.submit(() -> {
+                deleteRateLimiter.acquire();
+                deleteSecurityGroup(securityGroupId);
+                return null;
+            })));
+
+            for (final Map.Entry<String, Future<Void>> deletion : pending.entrySet()) {
+                try {
+                    deletion.getValue().get();
+                    deleted.add(deletion.getKey());
+                } catch (ExecutionException e) {
+                    // Typically DependencyViolation: another group's rules still reference this one.
+                    failures.put(deletion.getKey(), String.valueOf(e.getCause().getMessage()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.put(deletion.getKey(), "Interrupted");
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return deleted;
+    }
+
+    private void deleteSecurityGroup(final String securityGroupId) {
+        final DeleteSecurityGroupRequest deleteSecurityGroupRequest = new DeleteSecurityGroupRequest().withGroupId(securityGroupId);
+        try {
+            clientProxy.injectCredentialsAndInvoke(deleteSecurityGroupRequest, ec2Client::deleteSecurityGroup);
+        } catch (AmazonServiceException e) {
+            if (!GROUP_NOT_FOUND_ERROR_CODE.equals(e.getErrorCode())) {
+                throw e;
+            }
+        }
+    }
+
+    @Builder
+    @lombok.Value
+    public static class Report {
+        private boolean dryRun;
+        /**
+         * Groups that carry the provider's creation tag and naming convention.
+         */
+        @Builder.Default
+        private List<String> candidates = Collections.emptyList();
+        /**
+         * Candidates with no network interface attached; what a dry run would delete.
+         */
+        @Builder.Default
+        private List<String> orphans = Collections.emptyList();
+        @Builder.Default
+        private List<String> deleted = Collections.emptyList();
+        /**
+         * Error message per group that could not be deleted.
+         */
+        @Builder.Default
+        private Map<String, String> failures = Collections.emptyMap();
+    }
+}
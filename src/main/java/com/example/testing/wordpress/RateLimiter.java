@@ -0,0 +1,49 @@
+package com.example.testing.wordpress;
+
+/**
+ * Token bucket that allows bursts of up to one second's worth of permits and then spaces callers
+ * out to the configured rate.
+ */
+public class RateLimiter {
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final double permitsPerSecond;
+    private final double maxPermits;
+    private double availablePermits;
+    private long lastRefillNanos;
+
+    public RateLimiter(final double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive: " + permitsPerSecond);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.maxPermits = Math.max(1, permitsPerSecond);
+        this.availablePermits = maxPermits;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public void acquire() {
+        final long waitNanos = reserve(System.nanoTime());
+        if (waitNanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Takes a permit, going into debt if none is available, and returns how long the caller has to
+     * wait before using it.
+     */
+    synchronized long reserve(final long nowNanos) {
+        availablePermits = Math.min(maxPermits,
+                availablePermits + (nowNanos - lastRefillNanos) * permitsPerSecond / NANOS_PER_SECOND);
+        lastRefillNanos = nowNanos;
+        availablePermits -= 1;
+        return availablePermits >= 0 ? 0 : (long) (-availablePermits * NANOS_PER_SECOND / permitsPerSecond);
+    }
+}
@@ -1,12 +1,35 @@
 package com.example.testing.wordpress;
 
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.Reservation;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
+import java.util.List;
+import java.util.function.Function;
+
 public class ReadHandler extends BaseHandler<CallbackContext> {
+    private static final String DELETED_INSTANCE_STATE = "terminated";
+    private static final String INSTANCE_NOT_FOUND_ERROR_CODE = "InvalidInstanceID.NotFound";
+
+    private final SiteIndex siteIndex;
+    private final DescribeCoalescer describeCoalescer = DescribeCoalescer.shared();
+
+    public ReadHandler() {
+        this(SiteIndex.fromEnvironment());
+    }
+
+    ReadHandler(final SiteIndex siteIndex) {
+        this.siteIndex = siteIndex;
+    }
 
     @Override
     public ProgressEvent<ResourceModel, CallbackContext> handleRequest(
@@ -17,7 +40,53 @@ public class ReadHandler extends BaseHandler<CallbackContext> {
 
         final ResourceModel model = request.getDesiredResourceState();
 
-        // TODO : put your code here
+        final String region = RegionalClients.regionOf(model);
+        final SiteIndexEntry indexed = siteIndex == null ? null : siteIndex.get(model.getInstanceId());
+        // An entry is only as fresh as the region's last reconcile in this container; an instance terminated outside
+        // CloudFormation since then must not read as present.
+        if (indexed != null && !siteIndex.isReconcileDue(region)) {
+            return ProgressEvent.<ResourceModel, CallbackContext>builder()
+                .resourceModel(indexed.toModel())
+                .status(OperationStatus.SUCCESS)
+                .build();
+        }
+
+        // Not indexed, not recently reconciled, or the index is disabled: ask EC2.
+        final AmazonEC2 ec2Client = RegionalClients.forRegion(region);
+        final DescribeInstancesRequest describeInstancesRequest = new DescribeInstancesRequest().withInstanceIds(model.getInstanceId());
+        Instance instance;
+        try {
+            final DescribeInstancesResult describeInstancesResult = describeCoalescer.invoke(proxy, DescribeCoalescer.callerOf(request, proxy), region, describeInstancesRequest, new Function<DescribeInstancesRequest, DescribeInstancesResult>() {
+                @Override
+                public DescribeInstancesResult apply(DescribeInstancesRequest describeInstancesRequest) {
+                    return ec2Client.describeInstances(describeInstancesRequest);
+                }
+            });
+            instance = describeInstancesResult.getReservations()
+                .stream()
+                .map(Reservation::getInstances)
+                .flatMap(List::stream)
+                .findFirst()
+                .orElse(new Instance());
+        } catch (AmazonServiceException e) {
+            // EC2 rejects the ID of an instance it no longer knows instead of describing it: that is a missing site.
+            if (!INSTANCE_NOT_FOUND_ERROR_CODE.equals(e.getErrorCode())) {
+                throw e;
+            }
+            instance = new Instance();
+        }
+
+        if (instance.getState() == null || DELETED_INSTANCE_STATE.equals(instance.getState().getName())) {
+            if (indexed != null) {
+                siteIndex.remove(model.getInstanceId());
+            }
+            return ProgressEvent.<ResourceModel, CallbackContext>builder()
+                .status(OperationStatus.FAILED)
+                .errorCode(HandlerErrorCode.NotFound)
+                .build();
+        }
+
+        model.setPublicIp(instance.getPublicIpAddress());
 
         return ProgressEvent.<ResourceModel, CallbackContext>builder()
             .resourceModel(model)
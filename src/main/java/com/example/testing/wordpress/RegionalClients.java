@@ -0,0 +1,84 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * One EC2 client per region, shared by every handler in the container. Each regional client has its
+ * own {@link RateLimiter}, so a burst of work in one region cannot eat into another region's
+ * request budget. Every EC2 call is also recorded with a {@link CircuitBreaker}, and refused
+ * without going out while the circuit for its region and operation class is open. That is the
+ * container's shared breaker unless the caller brings its own, so a handler checks and records with
+ * the same one.
+ */
+public final class RegionalClients {
+    static final String DEFAULT_REGION = "us-west-2";
+    static final String REQUESTS_PER_SECOND_ENV = "EC2_REQUESTS_PER_SECOND";
+    private static final double DEFAULT_REQUESTS_PER_SECOND = 20;
+
+    private static final ConcurrentMap<CircuitBreaker, ConcurrentMap<String, AmazonEC2>> CLIENTS = new ConcurrentHashMap<>();
+
+    private RegionalClients() {
+    }
+
+    public static AmazonEC2 forRegion(final String region) {
+        return forRegion(region, CircuitBreaker.shared());
+    }
+
+    /**
+     * @return the region's client, recording its calls with the given breaker
+     */
+    public static AmazonEC2 forRegion(final String region, final CircuitBreaker circuitBreaker) {
+        return CLIENTS.computeIfAbsent(circuitBreaker, breaker -> new ConcurrentHashMap<>())
+                .computeIfAbsent(region, key -> newRateLimitedClient(key, circuitBreaker));
+    }
+
+    /**
+     * The region a site lives in: the model's Region property, or the provider's original region for
+     * sites created before the property existed.
+     */
+    public static String regionOf(final ResourceModel model) {
+        return model == null || model.getRegion() == null ? DEFAULT_REGION : model.getRegion();
+    }
+
+    private static AmazonEC2 newRateLimitedClient(final String region, final CircuitBreaker circuitBreaker) {
+        final AmazonEC2 client = AmazonEC2ClientBuilder.standard().withRegion(region).build();
+        final RateLimiter rateLimiter = new RateLimiter(requestsPerSecond());
+        return (AmazonEC2) Proxy.newProxyInstance(AmazonEC2.class.getClassLoader(), new Class<?>[]{AmazonEC2.class},
+                (proxy, method, args) -> {
+                    final CircuitBreaker.OperationClass operationClass =
+                            args != null && args.length == 1 && args[0] instanceof AmazonWebServiceRequest ?
+                                    CircuitBreaker.OperationClass.of(method.getName()) :
+                                    null;
+                    if (operationClass != null) {
+                        circuitBreaker.acquire(region, operationClass);
+                    }
+                    if (method.getDeclaringClass() != Object.class) {
+                        rateLimiter.acquire();
+                    }
+                    try {
+                        final Object result = method.invoke(client, args);
+                        if (operationClass != null) {
+                            circuitBreaker.onSuccess(region, operationClass);
+                        }
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        if (operationClass != null) {
+                            circuitBreaker.onError(region, operationClass, e.getCause());
+                        }
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static double requestsPerSecond() {
+        final String configured = System.getenv(REQUESTS_PER_SECOND_ENV);
+        return configured == null || configured.isEmpty() ? DEFAULT_REQUESTS_PER_SECOND : Double.parseDouble(configured);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.testing.wordpress;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * The property constraints of the resource schema ({@value #SCHEMA_RESOURCE}), compiled once per
+ * container: required properties, and per string property its {@link Pattern} and length limits.
+ * Handlers run it before their first EC2 call, so a malformed model fails in microseconds instead of
+ * after a DescribeSubnets round trip.
+ *
+ * Patterns are searched for, not matched against the whole value, the same as JSON Schema does;
+ * anchoring is up to the pattern itself.
+ */
+public class ResourceModelValidator {
+    static final String SCHEMA_RESOURCE = "/example-testing-wordpress.json";
+
+    private static final Map<String, Function<ResourceModel, String>> PROPERTIES = new HashMap<>();
+    private static ResourceModelValidator fromSchema;
+
+    static {
+        PROPERTIES.put("Name", ResourceModel::getName);
+        PROPERTIES.put("SubnetId", ResourceModel::getSubnetId);
+        PROPERTIES.put("Region", ResourceModel::getRegion);
+        PROPERTIES.put("InstanceId", ResourceModel::getInstanceId);
+        PROPERTIES.put("PublicIp", ResourceModel::getPublicIp);
+    }
+
+    private final List<String> required;
+    private final List<Constraint> constraints;
+
+    ResourceModelValidator(final JsonNode schema) {
+        final List<String> required = new ArrayList<>();
+        schema.path("required").forEach(property -> required.add(property.asText()));
+
+        final List<Constraint> constraints = new ArrayList<>();
+        final Iterator<Map.Entry<String, JsonNode>> properties = schema.path("properties").fields();
+        while (properties.hasNext()) {
+            final Map.Entry<String, JsonNode> property = properties.next();
+            final Function<ResourceModel, String> accessor = PROPERTIES.get(property.getKey());
+            if (accessor == null) {
+                throw new IllegalArgumentException("Schema property " + property.getKey() + " is not part of ResourceModel");
+            }
+            final JsonNode definition = property.getValue();
+            constraints.add(new Constraint(
+                    property.getKey(),
+                    accessor,
+                    definition.hasNonNull("pattern") ? Pattern.compile(definition.get("pattern").asText()) : null,
+                    definition.path("minLength").asInt(0),
+                    definition.path("maxLength").asInt(Integer.MAX_VALUE)));
+        }
+        this.required = Collections.unmodifiableList(required);
+        this.constraints = Collections.unmodifiableList(constraints);
+    }
+
+    /**
+     * The validator for the schema packaged with the handlers, compiled on first use.
+     */
+    public static synchronized ResourceModelValidator fromSchema() {
+        if (fromSchema == null) {
+            try (InputStream schema = ResourceModelValidator.class.getResourceAsStream(SCHEMA_RESOURCE)) {
+                if (schema == null) {
+                    throw new IllegalStateException("Resource schema " + SCHEMA_RESOURCE + " is not on the classpath");
+                }
+                fromSchema = new ResourceModelValidator(new ObjectMapper().readTree(schema));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return fromSchema;
+    }
+
+    /**
+     * @param checkRequired whether the schema's required properties must be present; only a create
+     *                      is guaranteed a complete model
+     * @return a message per violated constraint, empty when the model is valid
+     */
+    public List<String> violations(final ResourceModel model, final boolean checkRequired) {
+        List<String> violations = Collections.emptyList();
+        if (checkRequired) {
+            for (final String property : required) {
+                if (PROPERTIES.get(property).apply(model) == null) {
+                    violations = add(violations, property + " is required");
+                }
+            }
+        }
+        for (final Constraint constraint : constraints) {
+            final String violation = constraint.check(model);
+            if (violation != null) {
+                violations = add(violations, violation);
+            }
+        }
+        return violations;
+    }
+
+    private static List<String> add(final List<String> violations, final String violation) {
+        final List<String> added = violations.isEmpty() ? new ArrayList<>() : violations;
+        added.add(violation);
+        return added;
+    }
+
+    private static final class Constraint {
+        private final String property;
+        private final Function<ResourceModel, String> accessor;
+        private final Pattern pattern;
+        private final int minLength;
+        private final int maxLength;
+
+        private Constraint(final String property,
+                           final Function<ResourceModel, String> accessor,
+                           final Pattern pattern,
+                           final int minLength,
+                           final int maxLength) {
+            this.property = property;
+            this.accessor = accessor;
+            this.pattern = pattern;
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+        }
+
+        private String check(final ResourceModel model) {
+            final String value = accessor.apply(model);
+            if (value == null) {
+                return null;
+            }
+            final int length = value.codePointCount(0, value.length());
+            if (length < minLength || length > maxLength) {
+                return property + " must be between " + minLength + " and " + maxLength + " characters long";
+            }
+            if (pattern != null && !pattern.matcher(value).find()) {
+                return property + " must match " + pattern.pattern();
+            }
+            return null;
+        }
+    }
+}
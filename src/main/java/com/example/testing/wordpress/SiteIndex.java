@@ -0,0 +1,446 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.Reservation;
+import org.apache.logging.log4j.LogManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only index of the sites this provider has created, kept in a memory-mapped file so that
+ * List and Read can be answered without a round trip to EC2.
+ *
+ * The index is opt-in: it is only used when {@value #INDEX_PATH_ENV} is set (on Lambda this should
+ * point somewhere under /tmp). It is a cache, never the source of truth: every Lambda container has
+ * its own /tmp, so an index only holds what its container has seen. Handlers only trust a region's
+ * entries once {@link #reconcile(String, Function)} has run for it in this container, which both
+ * prunes entries EC2 no longer knows and adds the sites EC2 has that the index is missing.
+ *
+ * File layout: a 16 byte header (magic, version, end of log) followed by records of the form
+ * [int bodyLength][byte op][body]. Strings are a short byte length (-1 for null) and UTF-8 bytes.
+ * Loading stops at the first record that does not fit the log or does not parse, so a torn or
+ * corrupt tail costs the entries in it (reconcile brings back the ones EC2 still has) rather than
+ * the whole index.
+ */
+public class SiteIndex implements Closeable {
+    static final String INDEX_PATH_ENV = "WORDPRESS_SITE_INDEX_PATH";
+    static final long RECONCILE_INTERVAL_IN_MS = 15 * 60 * 1000;
+
+    private static final int MAGIC = 0x57505349;
+    private static final int VERSION = 2;
+    private static final int END_POSITION = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 5;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int MIN_DEAD_RECORDS_BEFORE_COMPACTION = 1024;
+    private static final int DESCRIBE_FILTER_CHUNK_SIZE = 200;
+    private static final String DELETED_INSTANCE_STATE = "terminated";
+
+    private static SiteIndex shared;
+    private static boolean sharedResolved;
+
+    private final FileChannel channel;
+    private final Map<String, Integer> offsets = new HashMap<>();
+    private MappedByteBuffer buffer;
+    private int end;
+    private int deadRecords;
+    private final Map<String, Long> lastReconciledAt = new HashMap<>();
+
+    private SiteIndex(final Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), INITIAL_CAPACITY));
+        load();
+    }
+
+    public static SiteIndex open(final Path path) {
+        try {
+            return new SiteIndex(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the container-wide index configured through {@value #INDEX_PATH_ENV}, or null when the
+     * index is not enabled.
+     */
+    public static synchronized SiteIndex fromEnvironment() {
+        if (!sharedResolved) {
+            final String path = System.getenv(INDEX_PATH_ENV);
+            shared = path == null || path.isEmpty() ? null : open(Paths.get(path));
+            sharedResolved = true;
+        }
+        return shared;
+    }
+
+    public synchronized SiteIndexEntry get(final String instanceId) {
+        final Integer offset = instanceId == null ? null : offsets.get(instanceId);
+        return offset == null ? null : readEntry(offset);
+    }
+
+    public synchronized List<SiteIndexEntry> entries() {
+        return offsets.values()
+                .stream()
+                .sorted()
+                .map(this::readEntry)
+                .collect(Collectors.toList());
+    }
+
+    public synchronized int size() {
+        return offsets.size();
+    }
+
+    public synchronized void put(final SiteIndexEntry entry) {
+        final int offset = append(PUT, encode(entry));
+        if (offsets.put(entry.getInstanceId(), offset) != null) {
+            deadRecords++;
+        }
+        maybeCompact();
+    }
+
+    public synchronized void remove(final String instanceId) {
+        if (instanceId == null || !offsets.containsKey(instanceId)) {
+            return;
+        }
+        append(REMOVE, encode(instanceId));
+        offsets.remove(instanceId);
+        // Both the original PUT and the REMOVE tombstone are now garbage.
+        deadRecords += 2;
+        maybeCompact();
+    }
+
+    /**
+     * Rewrites the log so it only holds live entries. The end marker is reset before rewriting, so a
+     * crash part way through leaves an empty (but valid) index rather than a corrupt one.
+     */
+    public synchronized void compact() {
+        final List<SiteIndexEntry> live = entries();
+        offsets.clear();
+        deadRecords = 0;
+        setEnd(HEADER_SIZE);
+        live.forEach(entry -> offsets.put(entry.getInstanceId(), append(PUT, encode(entry))));
+    }
+
+    public synchronized boolean isReconcileDue(final String region) {
+        return System.currentTimeMillis() - lastReconciledAt.getOrDefault(region, 0L) >= RECONCILE_INTERVAL_IN_MS;
+    }
+
+    /**
+     * Checks every instance indexed for the given region against EC2, dropping entries for instances that are gone and
+     * refreshing the ones whose address or security groups changed. Instance IDs are looked up with an
+     * instance-id filter rather than InstanceIds so that one missing instance does not fail the batch.
+     * Then adds the pending and running instances of the region's WordPress AMI that are not indexed
+     * yet, e.g. sites created by another container.
+     *
+     * @return the number of entries that were removed, updated or added
+     */
+    public synchronized int reconcile(final String region,
+                                      final Function<DescribeInstancesRequest, DescribeInstancesResult> describeInstances) {
+        final List<String> instanceIds = offsets.keySet()
+                .stream()
+                .filter(instanceId -> region.equals(get(instanceId).getRegion()))
+                .collect(Collectors.toList());
+        final Map<String, Instance> liveInstances = new HashMap<>();
+
+        for (int i = 0; i < instanceIds.size(); i += DESCRIBE_FILTER_CHUNK_SIZE) {
+            final List<String> chunk = instanceIds.subList(i, Math.min(i + DESCRIBE_FILTER_CHUNK_SIZE, instanceIds.size()));
+            String nextToken = null;
+            do {
+                final DescribeInstancesResult result = describeInstances.apply(new DescribeInstancesRequest()
+                        .withFilters(new Filter().withName("instance-id").withValues(chunk))
+                        .withNextToken(nextToken));
+                result.getReservations()
+                        .stream()
+                        .map(Reservation::getInstances)
+                        .flatMap(List::stream)
+                        .filter(instance -> !isTerminated(instance))
+                        .forEach(instance -> liveInstances.put(instance.getInstanceId(), instance));
+                nextToken = result.getNextToken();
+            } while (nextToken != null);
+        }
+
+        int changed = 0;
+        for (final String instanceId : instanceIds) {
+            final Instance instance = liveInstances.get(instanceId);
+            if (instance == null) {
+                remove(instanceId);
+                changed++;
+                continue;
+            }
+            final SiteIndexEntry indexed = get(instanceId);
+            final SiteIndexEntry refreshed = SiteIndexEntry.fromInstance(instance, indexed.getName())
+                    .toBuilder()
+                    .subnetId(instance.getSubnetId() == null ? indexed.getSubnetId() : instance.getSubnetId())
+                    .region(indexed.getRegion())
+                    .build();
+            if (!refreshed.equals(indexed)) {
+                put(refreshed);
+                changed++;
+            }
+        }
+        if (WordPressAmis.isSupported(region)) {
+            String nextToken = null;
+            do {
+                final DescribeInstancesResult result = describeInstances.apply(new DescribeInstancesRequest()
+                        .withFilters(
+                                new Filter().withName("image-id").withValues(WordPressAmis.forRegion(region)),
+                                new Filter().withName("instance-state-name").withValues("pending", "running"))
+                        .withNextToken(nextToken));
+                for (final Reservation reservation : result.getReservations()) {
+                    for (final Instance instance : reservation.getInstances()) {
+                        if (!offsets.containsKey(instance.getInstanceId()) && !isTerminated(instance)) {
+                            put(SiteIndexEntry.fromInstance(instance).toBuilder().region(region).build());
+                            changed++;
+                        }
+                    }
+                }
+                nextToken = result.getNextToken();
+            } while (nextToken != null);
+        }
+        lastReconciledAt.put(region, System.currentTimeMillis());
+        return changed;
+    }
+
+    private static boolean isTerminated(final Instance instance) {
+        return instance.getState() != null && DELETED_INSTANCE_STATE.equals(instance.getState().getName());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void load() {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            // Missing or unreadable index: start over, EC2 remains the source of truth.
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            setEnd(HEADER_SIZE);
+            return;
+        }
+
+        final long endMarker = buffer.getLong(END_POSITION);
+        end = (int) Math.max(HEADER_SIZE, Math.min(endMarker, buffer.capacity()));
+        int position = HEADER_SIZE;
+        while (position < end) {
+            final int recordEnd = endOfRecord(position);
+            if (recordEnd < 0) {
+                LogManager.getLogger(SiteIndex.class).warn("Site index record at {} is incomplete or corrupt, dropping the log from there on (end {})",
+                        position, endMarker);
+                break;
+            }
+            final byte op = buffer.get(position + 4);
+            final String instanceId = readString(position + RECORD_HEADER_SIZE);
+            if (op == PUT) {
+                if (offsets.put(instanceId, position) != null) {
+                    deadRecords++;
+                }
+            } else if (offsets.remove(instanceId) != null) {
+                deadRecords += 2;
+            } else {
+                deadRecords++;
+            }
+            position = recordEnd;
+        }
+        if (position != endMarker) {
+            // Later appends overwrite whatever was dropped.
+            setEnd(position);
+        }
+    }
+
+    /**
+     * @return the offset right after the record at the given position, or -1 if the record runs past the end of the
+     * log, has an unknown op, or its body does not parse as exactly the fields that op writes
+     */
+    private int endOfRecord(final int position) {
+        if (end - position < RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        final int bodyLength = buffer.getInt(position);
+        final byte op = buffer.get(position + 4);
+        final int bodyStart = position + RECORD_HEADER_SIZE;
+        if (bodyLength < 0 || bodyLength > end - bodyStart || op != PUT && op != REMOVE) {
+            return -1;
+        }
+        final int bodyEnd = bodyStart + bodyLength;
+        if (bodyLength < 2 || buffer.getShort(bodyStart) < 0) {
+            // Every record starts with a non-null instance ID.
+            return -1;
+        }
+        int field = bodyStart;
+        for (int i = 0; i < (op == PUT ? 5 : 1) && field >= 0; i++) {
+            field = endOfString(field, bodyEnd);
+        }
+        if (op == PUT && field >= 0) {
+            if (bodyEnd - field < 2 || buffer.getShort(field) < 0) {
+                return -1;
+            }
+            final int securityGroupCount = buffer.getShort(field);
+            field += 2;
+            for (int i = 0; i < securityGroupCount && field >= 0; i++) {
+                field = endOfString(field, bodyEnd);
+            }
+        }
+        return field == bodyEnd ? bodyEnd : -1;
+    }
+
+    private int endOfString(final int position, final int limit) {
+        if (limit - position < 2) {
+            return -1;
+        }
+        final int length = Math.max(buffer.getShort(position), 0);
+        return length > limit - position - 2 ? -1 : position + 2 + length;
+    }
+
+    private void maybeCompact() {
+        if (deadRecords >= MIN_DEAD_RECORDS_BEFORE_COMPACTION && deadRecords > offsets.size()) {
+            compact();
+        }
+    }
+
+    private int append(final byte op, final byte[] body) {
+        final int offset = end;
+        ensureCapacity(offset + RECORD_HEADER_SIZE + body.length);
+        buffer.putInt(offset, body.length);
+        buffer.put(offset + 4, op);
+        for (int i = 0; i < body.length; i++) {
+            buffer.put(offset + RECORD_HEADER_SIZE + i, body[i]);
+        }
+        // The end marker moves only once the record is fully written.
+        setEnd(offset + RECORD_HEADER_SIZE + body.length);
+        return offset;
+    }
+
+    private void setEnd(final int newEnd) {
+        end = newEnd;
+        buffer.putLong(END_POSITION, newEnd);
+    }
+
+    private void ensureCapacity(final int required) {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long capacity = buffer.capacity();
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Site index is full");
+        }
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private SiteIndexEntry readEntry(final int offset) {
+        int position = offset + RECORD_HEADER_SIZE;
+        final String instanceId = readString(position);
+        position += stringLength(position);
+        final String name = readString(position);
+        position += stringLength(position);
+        final String publicIp = readString(position);
+        position += stringLength(position);
+        final String subnetId = readString(position);
+        position += stringLength(position);
+        final String region = readString(position);
+        position += stringLength(position);
+
+        final int securityGroupCount = buffer.getShort(position);
+        position += 2;
+        final List<String> securityGroups = new ArrayList<>(securityGroupCount);
+        for (int i = 0; i < securityGroupCount; i++) {
+            securityGroups.add(readString(position));
+            position += stringLength(position);
+        }
+
+        return SiteIndexEntry.builder()
+                .instanceId(instanceId)
+                .name(name)
+                .publicIp(publicIp)
+                .subnetId(subnetId)
+                .region(region)
+                .securityGroups(securityGroups)
+                .build();
+    }
+
+    private String readString(final int position) {
+        final short length = buffer.getShort(position);
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(position + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int stringLength(final int position) {
+        return 2 + Math.max(buffer.getShort(position), 0);
+    }
+
+    private static byte[] encode(final SiteIndexEntry entry) {
+        final List<String> securityGroups = entry.getSecurityGroups();
+        final List<byte[]> fields = new ArrayList<>();
+        fields.add(bytesOf(entry.getInstanceId()));
+        fields.add(bytesOf(entry.getName()));
+        fields.add(bytesOf(entry.getPublicIp()));
+        fields.add(bytesOf(entry.getSubnetId()));
+        fields.add(bytesOf(entry.getRegion()));
+        securityGroups.forEach(group -> fields.add(bytesOf(group)));
+
+        final int size = fields.stream().mapToInt(field -> 2 + (field == null ? 0 : field.length)).sum() + 2;
+        final ByteBuffer body = ByteBuffer.allocate(size);
+        for (int i = 0; i < 5; i++) {
+            putString(body, fields.get(i));
+        }
+        body.putShort((short) securityGroups.size());
+        for (int i = 5; i < fields.size(); i++) {
+            putString(body, fields.get(i));
+        }
+        return body.array();
+    }
+
+    private static byte[] encode(final String instanceId) {
+        final byte[] field = bytesOf(instanceId);
+        final ByteBuffer body = ByteBuffer.allocate(2 + field.length);
+        putString(body, field);
+        return body.array();
+    }
+
+    private static byte[] bytesOf(final String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(final ByteBuffer body, final byte[] field) {
+        if (field == null) {
+            body.putShort((short) -1);
+        } else {
+            body.putShort((short) field.length);
+            body.put(field);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.services.ec2.model.GroupIdentifier;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.Tag;
+import lombok.Builder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Builder(toBuilder = true)
+@lombok.Value
+public class SiteIndexEntry {
+    private static final String SITE_NAME_TAG_KEY = "Name";
+
+    private String name;
+    private String instanceId;
+    private String publicIp;
+    private String subnetId;
+    private String region;
+    @Builder.Default
+    private List<String> securityGroups = Collections.emptyList();
+
+    public ResourceModel toModel() {
+        return ResourceModel.builder()
+                .name(name)
+                .instanceId(instanceId)
+                .publicIp(publicIp)
+                .subnetId(subnetId)
+                .region(region)
+                .build();
+    }
+
+    public static SiteIndexEntry fromInstance(final Instance instance) {
+        final String name = instance.getTags() == null ? null : instance.getTags()
+                .stream()
+                .filter(tag -> SITE_NAME_TAG_KEY.equals(tag.getKey()))
+                .map(Tag::getValue)
+                .findFirst()
+                .orElse(null);
+        return fromInstance(instance, name);
+    }
+
+    public static SiteIndexEntry fromInstance(final Instance instance, final String name) {
+        final List<String> securityGroups = instance.getSecurityGroups() == null ?
+                Collections.emptyList() :
+                instance.getSecurityGroups()
+                        .stream()
+                        .map(GroupIdentifier::getGroupId)
+                        .collect(Collectors.toList());
+
+        return SiteIndexEntry.builder()
+                .name(name)
+                .instanceId(instance.getInstanceId())
+                .publicIp(instance.getPublicIpAddress())
+                .subnetId(instance.getSubnetId())
+                .securityGroups(securityGroups)
+                .build();
+    }
+}
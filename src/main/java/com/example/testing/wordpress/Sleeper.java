@@ -0,0 +1,12 @@
+package com.example.testing.wordpress;
+
+/**
+ * How the handlers wait between polls and retries. Production code sleeps the thread; tests and
+ * the stabilization simulator pass a virtual clock so they don't wait in real time.
+ */
+@FunctionalInterface
+public interface Sleeper {
+    Sleeper SYSTEM = Thread::sleep;
+
+    void sleep(long millis) throws InterruptedException;
+}
@@ -0,0 +1,46 @@
+package com.example.testing.wordpress;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves the WordPress AMI to launch in each region. The built-in table can be extended or
+ * overridden through {@value #AMI_IDS_ENV}, formatted as {@code region=ami-id,region=ami-id}.
+ */
+public final class WordPressAmis {
+    static final String AMI_IDS_ENV = "WORDPRESS_AMI_IDS";
+
+    private static final Map<String, String> AMI_IDS = loadAmiIds(System.getenv(AMI_IDS_ENV));
+
+    private WordPressAmis() {
+    }
+
+    public static String forRegion(final String region) {
+        final String amiId = AMI_IDS.get(region);
+        if (amiId == null) {
+            throw new RuntimeException("No WordPress AMI is configured for region " + region);
+        }
+        return amiId;
+    }
+
+    public static boolean isSupported(final String region) {
+        return AMI_IDS.containsKey(region);
+    }
+
+    static Map<String, String> loadAmiIds(final String overrides) {
+        final Map<String, String> amiIds = new HashMap<>();
+        amiIds.put("us-west-2", "ami-04fb0368671b6f138");
+
+        if (overrides != null && !overrides.trim().isEmpty()) {
+            for (final String override : overrides.split(",")) {
+                final String[] regionAndAmi = override.trim().split("=");
+                if (regionAndAmi.length != 2) {
+                    throw new IllegalArgumentException("Malformed " + AMI_IDS_ENV + " entry: " + override);
+                }
+                amiIds.put(regionAndAmi[0].trim(), regionAndAmi[1].trim());
+            }
+        }
+        return Collections.unmodifiableMap(amiIds);
+    }
+}
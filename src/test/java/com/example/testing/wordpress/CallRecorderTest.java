@@ -0,0 +1,91 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.GroupIdentifier;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.services.ec2.model.TerminateInstancesRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+public class CallRecorderTest {
+    @TempDir
+    Path traceDirectory;
+
+    @Mock
+    private AmazonWebServicesClientProxy proxy;
+
+    @Test
+    public void testCallsAreAppendedPerInvocationAndReadBack() throws Exception {
+        final CallRecorder recorder = new CallRecorder("delete", traceDirectory, () -> 1_000);
+        final DescribeInstancesResult described = new DescribeInstancesResult().withReservations(new Reservation()
+                .withInstances(new Instance()
+                        .withInstanceId("i-1234")
+                        .withState(new InstanceState().withName("shutting-down"))
+                        .withSecurityGroups(new GroupIdentifier().withGroupId("sg-1234"))));
+        doReturn(described).when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+        final AmazonServiceException throttled = new AmazonServiceException("Rate exceeded");
+        throttled.setErrorCode("RequestLimitExceeded");
+        throttled.setStatusCode(503);
+        doThrow(throttled).when(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+
+        recorder.begin("trace-1234", ResourceModel.builder().name("Site").instanceId("i-1234").build());
+        final AmazonWebServicesClientProxy recording = recorder.wrap(proxy);
+        final DescribeInstancesResult result = recording.injectCredentialsAndInvoke(
+                new DescribeInstancesRequest().withInstanceIds("i-1234"), request -> null);
+        assertThat(result).isSameAs(described);
+        recorder.end();
+        recorder.begin("trace-1234", ResourceModel.builder().name("Site").instanceId("i-1234").build());
+        assertThatThrownBy(() -> recorder.wrap(proxy).injectCredentialsAndInvoke(new TerminateInstancesRequest(), request -> null))
+                .isSameAs(throttled);
+        recorder.end();
+
+        final List<String> lines = Files.readAllLines(traceDirectory.resolve("trace-1234.calls.jsonl"), StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(4);
+        assertThat(lines.get(0)).isEqualTo("{\"type\":\"invocation\",\"category\":\"delete\",\"ts\":1000,"
+                + "\"model\":{\"Name\":\"Site\",\"InstanceId\":\"i-1234\"}}");
+        final JsonNode describe = CallRecorder.MAPPER.readTree(lines.get(1));
+        assertThat(describe.get("operation").asText()).isEqualTo("DescribeInstances");
+        assertThat(describe.get("request").asText()).contains("i-1234");
+        assertThat(describe.has("latencyMs")).isTrue();
+        assertThat(CallRecorder.readResponse("DescribeInstances", describe.get("response"))).isEqualTo(described);
+        final JsonNode terminate = CallRecorder.MAPPER.readTree(lines.get(3));
+        assertThat(terminate.get("operation").asText()).isEqualTo("TerminateInstances");
+        assertThat(terminate.has("response")).isFalse();
+        assertThat(terminate.get("error").get("code").asText()).isEqualTo("RequestLimitExceeded");
+        assertThat(terminate.get("error").get("status").asInt()).isEqualTo(503);
+    }
+
+    @Test
+    public void testDisabledRecorderLeavesTheProxyAlone() throws Exception {
+        final CallRecorder recorder = new CallRecorder("create", null, System::currentTimeMillis);
+
+        recorder.begin("trace-1234", ResourceModel.builder().name("Site").build());
+        assertThat(recorder.wrap(proxy)).isSameAs(proxy);
+        recorder.end();
+
+        assertThat(recorder.isEnabled()).isFalse();
+        assertThat(Files.list(traceDirectory)).isEmpty();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.testing.wordpress;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays the traces in {@code src/test/resources/call-traces} (recorded from
+ * {@link StabilizationSimulator}'s scripted EC2) against the handlers and holds them to their
+ * baselines. A change that makes a handler call EC2 more often fails here; if it is intended,
+ * rewrite the baselines with {@link CallTraceReplayer}'s {@code -Dreplay.updateBaseline=true}.
+ */
+public class CallTraceReplayTest {
+    private final CallTraceReplayer replayer = new CallTraceReplayer(0);
+
+    @Test
+    public void testRecordedLifecyclesStayWithinTheirBaselines() throws Exception {
+        final List<Path> traceFiles = traceFiles();
+        assertThat(traceFiles).isNotEmpty();
+
+        for (final Path traceFile : traceFiles) {
+            final CallTraceReplayer.Measurement measurement = replayer.replay(CallTraceReplayer.read(traceFile));
+
+            assertThat(measurement.isSucceeded()).as(traceFile + ": " + measurement.getFailure()).isTrue();
+            assertThat(CallTraceReplayer.regressions(measurement,
+                    CallTraceReplayer.readBaseline(CallTraceReplayer.baselineOf(traceFile)),
+                    CallTraceReplayer.DEFAULT_TOLERANCE))
+                    .as(traceFile.toString())
+                    .isEmpty();
+        }
+    }
+
+    @Test
+    public void testReplayMakesTheRecordedCalls() throws Exception {
+        final CallTraceReplayer.Trace trace = CallTraceReplayer.read(traceFile("create-boot-45s"));
+
+        final CallTraceReplayer.Measurement measurement = replayer.replay(trace);
+
+        assertThat(trace.getCategory()).isEqualTo("create");
+        assertThat(measurement.getInvocations()).isEqualTo(trace.getInvocations());
+        assertThat(measurement.getCalls().values().stream().mapToInt(Integer::intValue).sum()).isEqualTo(trace.getCalls().size());
+    }
+
+    @Test
+    public void testMoreCallsOrMoreLatencyAreRegressions() {
+        final CallTraceReplayer.Measurement baseline = measurement(true, 4, calls(1, 3), 20_000);
+
+        assertThat(CallTraceReplayer.regressions(measurement(true, 4, calls(1, 2), 21_000), baseline, 0.1)).isEmpty();
+        assertThat(CallTraceReplayer.regressions(measurement(true, 5, calls(1, 4), 23_000), baseline, 0.1))
+                .containsExactly("invocations 5 > baseline 4",
+                        "DescribeInstances calls 4 > baseline 3",
+                        "latency 23000 ms > baseline 20000 ms + 10%");
+        assertThat(CallTraceReplayer.regressions(measurement(false, 4, calls(1, 3), 20_000), baseline, 0.1))
+                .containsExactly("lifecycle failed: NotStabilized");
+    }
+
+    private static List<Path> traceFiles() throws Exception {
+        try (Stream<Path> files = Files.list(traceDirectory())) {
+            return files.filter(file -> file.toString().endsWith(CallTraceReplayer.TRACE_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Path traceFile(final String name) throws Exception {
+        return traceDirectory().resolve(name + CallTraceReplayer.TRACE_SUFFIX);
+    }
+
+    private static Path traceDirectory() throws Exception {
+        return Paths.get(CallTraceReplayTest.class.getResource("/call-traces").toURI());
+    }
+
+    private static Map<String, Integer> calls(final int terminates, final int describes) {
+        final Map<String, Integer> calls = new TreeMap<>();
+        calls.put("TerminateInstances", terminates);
+        calls.put("DescribeInstances", describes);
+        return Collections.unmodifiableMap(calls);
+    }
+
+    private static CallTraceReplayer.Measurement measurement(final boolean succeeded,
+                                                             final int invocations,
+                                                             final Map<String, Integer> calls,
+                                                             final long latencyInMs) {
+        return CallTraceReplayer.Measurement.builder()
+                .succeeded(succeeded)
+                .failure(succeeded ? null : "NotStabilized")
+                .invocations(invocations)
+                .calls(calls)
+                .latencyInMs(latencyInMs)
+                .build();
+    }
+}
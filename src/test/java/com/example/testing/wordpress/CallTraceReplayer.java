@@ -0,0 +1,317 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.AmazonWebServiceResult;
+import com.amazonaws.ResponseMetadata;
+import com.amazonaws.SdkClientException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Builder;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.Credentials;
+import software.amazon.cloudformation.proxy.LoggerProxy;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Replays a lifecycle recorded by {@link CallRecorder} against the current {@link CreateHandler} or
+ * {@link DeleteHandler}, offline. The handler is driven from its first invocation with the recorded
+ * model, re-invoked while it is in progress, and every EC2 call it makes is answered with the next
+ * recorded response (or error) for that operation; once an operation's responses run out its last
+ * one is repeated, so a handler that now polls more often keeps going and the extra calls show up in
+ * the counts.
+ *
+ * Time is virtual: a replayed call takes its recorded latency, handler sleeps take what they ask for,
+ * and the sum of the two is the lifecycle's latency. At a speed above 0 the replay also waits in real
+ * time, 1 for the original pace (callback delays included), 10 for ten times faster; at 0 it does not
+ * wait at all. The measurement is compared with a baseline stored next to the trace,
+ * {@code <name>.baseline.json}: more calls of any operation, more invocations, or latency above the
+ * baseline's by more than the tolerance are regressions.
+ *
+ * Run {@link #main} with the test classpath and the trace files as arguments, e.g.
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.testing.wordpress.CallTraceReplayer -Dexec.args=/tmp/traces/1234.calls.jsonl -Dreplay.speed=10}.
+ * It exits with status 1 on a regression; {@code -Dreplay.updateBaseline=true} writes the measurement
+ * as the new baseline instead.
+ */
+public class CallTraceReplayer {
+    static final String TRACE_SUFFIX = ".calls.jsonl";
+    static final String BASELINE_SUFFIX = ".baseline.json";
+    static final double DEFAULT_TOLERANCE = 0.1;
+    private static final int MAX_INVOCATIONS = 10_000;
+
+    /**
+     * A recorded lifecycle: which handler, the model of its first invocation, how many invocations it
+     * took and the calls they made, in order.
+     */
+    @Builder
+    @lombok.Value
+    static class Trace {
+        private String category;
+        private ResourceModel model;
+        private int invocations;
+        private List<JsonNode> calls;
+    }
+
+    @Builder
+    @lombok.Value
+    static class Measurement {
+        private boolean succeeded;
+        private String failure;
+        private int invocations;
+        private Map<String, Integer> calls;
+        /**
+         * Recorded latency of the calls made plus the time the handler slept, in virtual time.
+         */
+        private long latencyInMs;
+        private long wallTimeInMs;
+    }
+
+    private final double speed;
+
+    public CallTraceReplayer(final double speed) {
+        this.speed = speed;
+    }
+
+    public static Trace read(final Path traceFile) throws IOException {
+        String category = null;
+        ResourceModel model = null;
+        int invocations = 0;
+        final List<JsonNode> calls = new ArrayList<>();
+        for (final String line : Files.readAllLines(traceFile, StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            final JsonNode entry = CallRecorder.MAPPER.readTree(line);
+            if (CallRecorder.INVOCATION.equals(entry.path("type").asText())) {
+                if (invocations++ == 0) {
+                    category = entry.path("category").asText();
+                    model = CallRecorder.MAPPER.treeToValue(entry.get("model"), ResourceModel.class);
+                }
+            } else if (CallRecorder.CALL.equals(entry.path("type").asText())) {
+                calls.add(entry);
+            }
+        }
+        if (model == null) {
+            throw new IOException("No invocation recorded in " + traceFile);
+        }
+        return Trace.builder().category(category).model(model).invocations(invocations).calls(calls).build();
+    }
+
+    public Measurement replay(final Trace trace) {
+        final long startedAt = System.nanoTime();
+        final VirtualClock clock = new VirtualClock();
+        final ReplayProxy proxy = new ReplayProxy(trace.getCalls(), clock);
+        final Sleeper sleeper = millis -> {
+            clock.sleep(millis);
+            pace(millis);
+        };
+        final BaseHandler<CallbackContext> handler = "delete".equals(trace.getCategory()) ?
+                new DeleteHandler(null, sleeper) :
+                new CreateHandler(null, new InstanceTypeFallback(InstanceTypeFallback.DEFAULT_INSTANCE_TYPES, clock::now), sleeper);
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(trace.getModel())
+                .clientRequestToken("replay")
+                .build();
+
+        final Measurement.MeasurementBuilder measurement = Measurement.builder();
+        CallbackContext callbackContext = null;
+        int invocations = 0;
+        try {
+            ProgressEvent<ResourceModel, CallbackContext> progress;
+            do {
+                invocations++;
+                progress = handler.handleRequest(proxy, request, callbackContext, new LoggerProxy());
+                callbackContext = progress.getCallbackContext();
+                if (progress.getStatus() == OperationStatus.IN_PROGRESS) {
+                    pace(progress.getCallbackDelaySeconds() * 1000L);
+                }
+            } while (progress.getStatus() == OperationStatus.IN_PROGRESS && invocations < MAX_INVOCATIONS);
+            measurement.succeeded(progress.getStatus() == OperationStatus.SUCCESS)
+                    .failure(progress.getErrorCode() == null ? null : progress.getErrorCode() + ": " + progress.getMessage());
+        } catch (RuntimeException e) {
+            measurement.succeeded(false).failure(e.toString());
+        }
+        return measurement
+                .invocations(invocations)
+                .calls(new TreeMap<>(proxy.calls))
+                .latencyInMs(clock.now())
+                .wallTimeInMs((System.nanoTime() - startedAt) / 1_000_000)
+                .build();
+    }
+
+    /**
+     * @return what is worse in the measurement than in the baseline, empty if nothing is
+     */
+    static List<String> regressions(final Measurement measurement, final Measurement baseline, final double tolerance) {
+        final List<String> regressions = new ArrayList<>();
+        if (baseline.isSucceeded() && !measurement.isSucceeded()) {
+            regressions.add("lifecycle failed: " + measurement.getFailure());
+        }
+        if (measurement.getInvocations() > baseline.getInvocations()) {
+            regressions.add("invocations " + measurement.getInvocations() + " > baseline " + baseline.getInvocations());
+        }
+        final TreeSet<String> operations = new TreeSet<>(measurement.getCalls().keySet());
+        operations.addAll(baseline.getCalls().keySet());
+        for (final String operation : operations) {
+            final int calls = measurement.getCalls().getOrDefault(operation, 0);
+            final int baselineCalls = baseline.getCalls().getOrDefault(operation, 0);
+            if (calls > baselineCalls) {
+                regressions.add(operation + " calls " + calls + " > baseline " + baselineCalls);
+            }
+        }
+        if (measurement.getLatencyInMs() > baseline.getLatencyInMs() * (1 + tolerance)) {
+            regressions.add(String.format("latency %d ms > baseline %d ms + %.0f%%",
+                    measurement.getLatencyInMs(), baseline.getLatencyInMs(), tolerance * 100));
+        }
+        return regressions;
+    }
+
+    static Path baselineOf(final Path traceFile) {
+        final String name = traceFile.getFileName().toString();
+        return traceFile.resolveSibling((name.endsWith(TRACE_SUFFIX) ?
+                name.substring(0, name.length() - TRACE_SUFFIX.length()) :
+                name) + BASELINE_SUFFIX);
+    }
+
+    static Measurement readBaseline(final Path baselineFile) throws IOException {
+        final JsonNode baseline = CallRecorder.MAPPER.readTree(baselineFile.toFile());
+        final Map<String, Integer> calls = new TreeMap<>();
+        baseline.path("calls").fields().forEachRemaining(call -> calls.put(call.getKey(), call.getValue().asInt()));
+        return Measurement.builder()
+                .succeeded(baseline.path("succeeded").asBoolean())
+                .invocations(baseline.path("invocations").asInt())
+                .calls(calls)
+                .latencyInMs(baseline.path("latencyInMs").asLong())
+                .build();
+    }
+
+    static void writeBaseline(final Path baselineFile, final Measurement measurement) throws IOException {
+        final ObjectNode baseline = CallRecorder.MAPPER.createObjectNode()
+                .put("succeeded", measurement.isSucceeded())
+                .put("invocations", measurement.getInvocations());
+        final ObjectNode calls = baseline.putObject("calls");
+        measurement.getCalls().forEach(calls::put);
+        baseline.put("latencyInMs", measurement.getLatencyInMs());
+        Files.write(baselineFile, (CallRecorder.MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(baseline) + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void pace(final long millis) {
+        if (speed <= 0 || millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep((long) (millis / speed));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Replay interrupted", e);
+        }
+    }
+
+    /**
+     * Answers each call with the next recorded response for its operation, without calling EC2.
+     */
+    private final class ReplayProxy extends AmazonWebServicesClientProxy {
+        private final Map<String, Deque<JsonNode>> recorded = new HashMap<>();
+        private final Map<String, JsonNode> lastAnswered = new HashMap<>();
+        private final VirtualClock clock;
+        private final Map<String, Integer> calls = new HashMap<>();
+
+        private ReplayProxy(final List<JsonNode> recordedCalls, final VirtualClock clock) {
+            super(new LoggerProxy(), new Credentials("accessKeyId", "secretAccessKey", "sessionToken"), () -> Long.MAX_VALUE);
+            this.clock = clock;
+            recordedCalls.forEach(call -> recorded
+                    .computeIfAbsent(call.path("operation").asText(), operation -> new ArrayDeque<>())
+                    .add(call));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <RequestT extends AmazonWebServiceRequest, ResultT extends AmazonWebServiceResult<ResponseMetadata>> ResultT injectCredentialsAndInvoke(
+                final RequestT request,
+                final Function<RequestT, ResultT> requestFunction) {
+            final String operation = CallRecorder.operationOf(request);
+            calls.merge(operation, 1, Integer::sum);
+            final Deque<JsonNode> remaining = recorded.getOrDefault(operation, new ArrayDeque<>());
+            final JsonNode call = remaining.isEmpty() ? lastAnswered.get(operation) : remaining.poll();
+            if (call == null) {
+                throw new IllegalStateException("No " + operation + " call recorded");
+            }
+            lastAnswered.put(operation, call);
+
+            final long latencyInMs = call.path("latencyMs").asLong();
+            clock.advance(latencyInMs);
+            pace(latencyInMs);
+            if (call.has("error")) {
+                throw recordedError(call.get("error"));
+            }
+            try {
+                return (ResultT) CallRecorder.readResponse(operation, call.path("response"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private RuntimeException recordedError(final JsonNode error) {
+            if (!error.has("code")) {
+                return new SdkClientException(error.path("message").asText());
+            }
+            final AmazonServiceException serviceError = new AmazonServiceException(error.path("message").asText());
+            serviceError.setErrorCode(error.path("code").asText());
+            serviceError.setStatusCode(error.path("status").asInt());
+            return serviceError;
+        }
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final CallTraceReplayer replayer = new CallTraceReplayer(Double.parseDouble(System.getProperty("replay.speed", "1")));
+        final double tolerance = Double.parseDouble(System.getProperty("replay.tolerance", Double.toString(DEFAULT_TOLERANCE)));
+        final boolean updateBaseline = Boolean.getBoolean("replay.updateBaseline");
+
+        boolean regressed = false;
+        for (final String arg : args) {
+            final Path traceFile = Paths.get(arg);
+            final Measurement measurement = replayer.replay(read(traceFile));
+            System.out.printf("%s  %s  invocations %d  calls %s  latency %.1fs  wall %.1fs%n",
+                    traceFile.getFileName(),
+                    measurement.isSucceeded() ? "succeeded" : "failed (" + measurement.getFailure() + ")",
+                    measurement.getInvocations(),
+                    measurement.getCalls(),
+                    measurement.getLatencyInMs() / 1000.0,
+                    measurement.getWallTimeInMs() / 1000.0);
+
+            final Path baselineFile = baselineOf(traceFile);
+            if (updateBaseline) {
+                writeBaseline(baselineFile, measurement);
+                System.out.println("  baseline written to " + baselineFile);
+            } else if (Files.exists(baselineFile)) {
+                final List<String> regressions = regressions(measurement, readBaseline(baselineFile), tolerance);
+                regressions.forEach(regression -> System.out.println("  REGRESSION " + regression));
+                regressed |= !regressions.isEmpty();
+            } else {
+                System.out.println("  no baseline at " + baselineFile);
+            }
+        }
+        if (regressed) {
+            System.exit(1);
+        }
+    }
+}
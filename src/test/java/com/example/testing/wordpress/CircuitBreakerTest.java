@@ -0,0 +1,163 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import org.junit.jupiter.api.Test;
+
+import static com.example.testing.wordpress.CircuitBreaker.OperationClass.DESCRIBE;
+import static com.example.testing.wordpress.CircuitBreaker.OperationClass.MUTATE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CircuitBreakerTest {
+    private static final String REGION = "us-west-2";
+
+    private final VirtualClock clock = new VirtualClock();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(clock::now);
+
+    @Test
+    public void testOpensWhenHalfOfTheWindowFails() {
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS - 1; i++) {
+            circuitBreaker.onError(REGION, DESCRIBE, timeout());
+        }
+        assertThat(circuitBreaker.state(REGION, DESCRIBE)).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        circuitBreaker.onError(REGION, DESCRIBE, timeout());
+
+        assertThat(circuitBreaker.state(REGION, DESCRIBE)).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.retryAfterMs(REGION, DESCRIBE)).isEqualTo(CircuitBreaker.BASE_OPEN_IN_MS);
+        assertThatThrownBy(() -> circuitBreaker.acquire(REGION, DESCRIBE)).isInstanceOf(CircuitBreaker.OpenException.class);
+    }
+
+    @Test
+    public void testCircuitsAreKeptPerRegionAndOperationClass() {
+        trip(REGION, MUTATE);
+
+        assertThat(circuitBreaker.retryAfterMs(REGION, MUTATE)).isPositive();
+        assertThat(circuitBreaker.retryAfterMs(REGION, DESCRIBE)).isZero();
+        assertThat(circuitBreaker.retryAfterMs("eu-west-1", MUTATE)).isZero();
+        assertThat(circuitBreaker.retryAfterMs(REGION, DESCRIBE, MUTATE)).isPositive();
+    }
+
+    @Test
+    public void testStaysClosedWhileMostCallsSucceed() {
+        for (int i = 0; i < 100; i++) {
+            circuitBreaker.onSuccess(REGION, DESCRIBE);
+            circuitBreaker.onSuccess(REGION, DESCRIBE);
+            circuitBreaker.onError(REGION, DESCRIBE, timeout());
+        }
+
+        assertThat(circuitBreaker.state(REGION, DESCRIBE)).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testFailuresOutsideTheWindowAreForgotten() {
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS - 1; i++) {
+            circuitBreaker.onError(REGION, DESCRIBE, timeout());
+        }
+        clock.advance(CircuitBreaker.WINDOW_IN_MS + 1);
+
+        circuitBreaker.onError(REGION, DESCRIBE, timeout());
+
+        assertThat(circuitBreaker.state(REGION, DESCRIBE)).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testClientErrorsDoNotCountAgainstTheEndpoint() {
+        final AmazonServiceException invalidParameter = new AmazonServiceException("Invalid subnet");
+        invalidParameter.setStatusCode(400);
+        invalidParameter.setErrorCode("InvalidSubnetID.NotFound");
+        for (int i = 0; i < CircuitBreaker.WINDOW_SIZE; i++) {
+            circuitBreaker.onError(REGION, DESCRIBE, invalidParameter);
+        }
+
+        assertThat(circuitBreaker.state(REGION, DESCRIBE)).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(CircuitBreaker.isEndpointFailure(serviceError(503, "Unavailable"))).isTrue();
+        assertThat(CircuitBreaker.isEndpointFailure(serviceError(400, "RequestLimitExceeded"))).isTrue();
+        assertThat(CircuitBreaker.isEndpointFailure(timeout())).isTrue();
+    }
+
+    @Test
+    public void testCapacityShortagesDoNotCountAgainstTheEndpoint() {
+        for (int i = 0; i < CircuitBreaker.WINDOW_SIZE; i++) {
+            circuitBreaker.onError(REGION, MUTATE, serviceError(500, "InsufficientInstanceCapacity"));
+        }
+
+        assertThat(circuitBreaker.state(REGION, MUTATE)).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(CircuitBreaker.isEndpointFailure(serviceError(500, "InsufficientHostCapacity"))).isFalse();
+        assertThat(CircuitBreaker.isEndpointFailure(serviceError(500, "Unsupported"))).isFalse();
+        assertThat(CircuitBreaker.isEndpointFailure(serviceError(500, "InternalError"))).isTrue();
+    }
+
+    @Test
+    public void testSuccessfulProbeClosesTheCircuit() {
+        trip(REGION, DESCRIBE);
+        clock.advance(CircuitBreaker.BASE_OPEN_IN_MS);
+        assertThat(circuitBreaker.state(REGION, DESCRIBE)).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        circuitBreaker.acquire(REGION, DESCRIBE);
+        // Only one probe at a time.
+        assertThatThrownBy(() -> circuitBreaker.acquire(REGION, DESCRIBE)).isInstanceOf(CircuitBreaker.OpenException.class);
+        circuitBreaker.onSuccess(REGION, DESCRIBE);
+
+        assertThat(circuitBreaker.state(REGION, DESCRIBE)).isEqualTo(CircuitBreaker.State.CLOSED);
+        circuitBreaker.acquire(REGION, DESCRIBE);
+    }
+
+    @Test
+    public void testFailedProbesBackOffUpToTheMaximum() {
+        trip(REGION, DESCRIBE);
+        long openForMs = CircuitBreaker.BASE_OPEN_IN_MS;
+        for (int i = 0; i < 10; i++) {
+            clock.advance(openForMs);
+            circuitBreaker.acquire(REGION, DESCRIBE);
+            circuitBreaker.onError(REGION, DESCRIBE, timeout());
+
+            openForMs = Math.min(CircuitBreaker.MAX_OPEN_IN_MS, openForMs * 2);
+            assertThat(circuitBreaker.retryAfterMs(REGION, DESCRIBE)).isEqualTo(openForMs);
+        }
+        assertThat(openForMs).isEqualTo(CircuitBreaker.MAX_OPEN_IN_MS);
+    }
+
+    @Test
+    public void testLostProbeDoesNotHoldTheCircuitHalfOpen() {
+        trip(REGION, DESCRIBE);
+        clock.advance(CircuitBreaker.BASE_OPEN_IN_MS);
+        circuitBreaker.acquire(REGION, DESCRIBE);
+
+        clock.advance(CircuitBreaker.MAX_OPEN_IN_MS);
+
+        assertThat(circuitBreaker.retryAfterMs(REGION, DESCRIBE)).isZero();
+        circuitBreaker.acquire(REGION, DESCRIBE);
+    }
+
+    @Test
+    public void testCallbackDelayIsRoundedUpToWholeSeconds() {
+        assertThat(CircuitBreaker.callbackDelaySeconds(1)).isEqualTo(1);
+        assertThat(CircuitBreaker.callbackDelaySeconds(5_000)).isEqualTo(5);
+        assertThat(CircuitBreaker.callbackDelaySeconds(5_001)).isEqualTo(6);
+    }
+
+    @Test
+    public void testOperationClassFollowsTheOperationName() {
+        assertThat(CircuitBreaker.OperationClass.of("describeInstances")).isEqualTo(DESCRIBE);
+        assertThat(CircuitBreaker.OperationClass.of("runInstances")).isEqualTo(MUTATE);
+    }
+
+    private void trip(final String region, final CircuitBreaker.OperationClass operationClass) {
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS; i++) {
+            circuitBreaker.onError(region, operationClass, timeout());
+        }
+    }
+
+    private static SdkClientException timeout() {
+        return new SdkClientException("Unable to execute HTTP request: Read timed out");
+    }
+
+    private static AmazonServiceException serviceError(final int statusCode, final String errorCode) {
+        final AmazonServiceException error = new AmazonServiceException(errorCode);
+        error.setStatusCode(statusCode);
+        error.setErrorCode(errorCode);
+        return error;
+    }
+}
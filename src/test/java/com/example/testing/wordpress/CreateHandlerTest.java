@@ -1,9 +1,14 @@
 package com.example.testing.wordpress;
 
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.SdkClientException;
 import com.amazonaws.services.ec2.model.AuthorizeSecurityGroupIngressRequest;
 import com.amazonaws.services.ec2.model.AuthorizeSecurityGroupIngressResult;
 import com.amazonaws.services.ec2.model.CreateSecurityGroupRequest;
 import com.amazonaws.services.ec2.model.CreateSecurityGroupResult;
+import com.amazonaws.services.ec2.model.DeleteSecurityGroupRequest;
+import com.amazonaws.services.ec2.model.DeleteSecurityGroupResult;
 import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
 import com.amazonaws.services.ec2.model.DescribeInstancesResult;
 import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
@@ -15,8 +20,14 @@ import com.amazonaws.services.ec2.model.Reservation;
 import com.amazonaws.services.ec2.model.RunInstancesRequest;
 import com.amazonaws.services.ec2.model.RunInstancesResult;
 import com.amazonaws.services.ec2.model.Subnet;
+import com.amazonaws.services.ec2.model.Tag;
+import com.amazonaws.services.ec2.model.TagSpecification;
+import com.amazonaws.services.ec2.model.TerminateInstancesRequest;
+import com.amazonaws.services.ec2.model.TerminateInstancesResult;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ProgressEvent;
@@ -27,12 +38,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 @ExtendWith(MockitoExtension.class)
 public class CreateHandlerTest {
@@ -60,14 +79,14 @@ public class CreateHandlerTest {
 
         final ResourceModel model = ResourceModel.builder()
                 .name("MyWordPressSite")
-                .subnetId("subnet-1234")
+                .subnetId("subnet-1234abcd")
                 .build();
 
         final ResourceModel desiredOutputModel = ResourceModel.builder()
                 .instanceId("i-1234")
                 .publicIp("54.0.0.0")
                 .name("MyWordPressSite")
-                .subnetId("subnet-1234")
+                .subnetId("subnet-1234abcd")
                 .build();
 
         final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
@@ -104,7 +123,7 @@ public class CreateHandlerTest {
 
         final CreateHandler handler = new CreateHandler();
 
-        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234").build();
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
 
         final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
                 .desiredResourceState(model)
@@ -116,9 +135,13 @@ public class CreateHandlerTest {
         final CallbackContext desiredOutputContext = CallbackContext.builder()
                 .stabilizationRetriesRemaining(60)
                 .instance(instance)
+                .createdInstanceIds(Collections.emptyList())
+                .createdSecurityGroupIds(Arrays.asList("sg-1234"))
+                .traceId(response.getCallbackContext().getTraceId())
                 .build();
         assertThat(response).isNotNull();
         assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackContext().getTraceId()).isNotNull();
         assertThat(response.getCallbackContext()).isEqualToComparingFieldByField(desiredOutputContext);
         assertThat(response.getCallbackDelaySeconds()).isEqualTo(0);
         assertThat(response.getResourceModel()).isEqualTo(request.getDesiredResourceState());
@@ -137,9 +160,10 @@ public class CreateHandlerTest {
 
         doReturn(describeInstancesResult).when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
 
-        final CreateHandler handler = new CreateHandler();
+        final VirtualClock clock = new VirtualClock();
+        final CreateHandler handler = new CreateHandler(null, InstanceTypeFallback.fromEnvironment(), clock);
 
-        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234").build();
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
 
         final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
                 .desiredResourceState(model)
@@ -148,6 +172,7 @@ public class CreateHandlerTest {
         final CallbackContext context = CallbackContext.builder()
                 .stabilizationRetriesRemaining(60)
                 .instance(instance)
+                .traceId("trace-1234")
                 .build();
 
         final ProgressEvent<ResourceModel, CallbackContext> response
@@ -156,8 +181,10 @@ public class CreateHandlerTest {
         final CallbackContext desiredOutputContext = CallbackContext.builder()
                 .stabilizationRetriesRemaining(59)
                 .instance(instance)
+                .traceId("trace-1234")
                 .build();
 
+        assertThat(clock.slept()).isEqualTo(5000);
         assertThat(response).isNotNull();
         assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
         assertThat(response.getCallbackContext()).isEqualToComparingFieldByField(desiredOutputContext);
@@ -168,11 +195,356 @@ public class CreateHandlerTest {
         assertThat(response.getErrorCode()).isNull();
     }
 
+    @Test
+    public void testEverythingIsTaggedInTheCallThatCreatesIt() {
+        final Instance instance = new Instance().withInstanceId("i-1234").withState(new InstanceState().withName("pending"));
+        doReturn(new DescribeSubnetsResult().withSubnets(new Subnet().withVpcId("vpc-1234"))).when(proxy).injectCredentialsAndInvoke(any(DescribeSubnetsRequest.class), any(Function.class));
+        doReturn(new RunInstancesResult().withReservation(new Reservation().withInstances(instance))).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<RunInstancesRequest>any(RunInstancesRequest.class), any(Function.class));
+        doReturn(new CreateSecurityGroupResult().withGroupId("sg-1234")).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<CreateSecurityGroupRequest>any(CreateSecurityGroupRequest.class), any(Function.class));
+        doReturn(new AuthorizeSecurityGroupIngressResult()).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<AuthorizeSecurityGroupIngressRequest>any(AuthorizeSecurityGroupIngressRequest.class), any(Function.class));
+
+        final CreateHandler handler = new CreateHandler(null);
+
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        handler.handleRequest(proxy, request, null, logger);
+
+        final ArgumentCaptor<AmazonWebServiceRequest> captor = ArgumentCaptor.forClass(AmazonWebServiceRequest.class);
+        verify(proxy, atLeastOnce()).injectCredentialsAndInvoke(captor.capture(), any(Function.class));
+        final Tag siteName = new Tag().withKey("Name").withValue("MyWordPressSite");
+        assertThat(captor.getAllValues()).hasSize(4);
+        assertThat(captor.getAllValues()).filteredOn(RunInstancesRequest.class::isInstance)
+                .flatExtracting(runInstances -> ((RunInstancesRequest) runInstances).getTagSpecifications())
+                .containsExactly(
+                        new TagSpecification().withResourceType("instance").withTags(siteName),
+                        new TagSpecification().withResourceType("volume").withTags(siteName),
+                        new TagSpecification().withResourceType("network-interface").withTags(siteName));
+        assertThat(captor.getAllValues()).filteredOn(CreateSecurityGroupRequest.class::isInstance)
+                .flatExtracting(createSecurityGroup -> ((CreateSecurityGroupRequest) createSecurityGroup).getTagSpecifications())
+                .containsExactly(new TagSpecification().withResourceType("security-group").withTags(siteName,
+                        new Tag().withKey(CreateHandler.CREATED_BY_TAG_KEY).withValue(CreateHandler.CREATED_BY_TAG_VALUE)));
+    }
+
+    @Test
+    public void testSecurityGroupRolledBackWhenLaunchFails() {
+        doReturn(new DescribeSubnetsResult().withSubnets(new Subnet().withVpcId("vpc-1234"))).when(proxy).injectCredentialsAndInvoke(any(DescribeSubnetsRequest.class), any(Function.class));
+        doReturn(new CreateSecurityGroupResult().withGroupId("sg-1234")).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<CreateSecurityGroupRequest>any(CreateSecurityGroupRequest.class), any(Function.class));
+        doReturn(new AuthorizeSecurityGroupIngressResult()).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<AuthorizeSecurityGroupIngressRequest>any(AuthorizeSecurityGroupIngressRequest.class), any(Function.class));
+        doThrow(new RuntimeException("InsufficientInstanceCapacity")).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<RunInstancesRequest>any(RunInstancesRequest.class), any(Function.class));
+        doReturn(new DeleteSecurityGroupResult()).when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final CreateHandler handler = new CreateHandler();
+
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        assertThatThrownBy(() -> handler.handleRequest(proxy, request, null, logger))
+                .hasMessage("InsufficientInstanceCapacity");
+        verify(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testInsufficientCapacityFallsBackToNextInstanceType() {
+        final Instance instance = new Instance().withInstanceId("i-1234").withState(new InstanceState().withName("pending"));
+        final AmazonServiceException insufficientCapacity = new AmazonServiceException("Insufficient capacity.");
+        insufficientCapacity.setErrorCode("InsufficientInstanceCapacity");
+        doReturn(new DescribeSubnetsResult().withSubnets(new Subnet().withVpcId("vpc-1234").withAvailabilityZone("us-west-2a"))).when(proxy).injectCredentialsAndInvoke(any(DescribeSubnetsRequest.class), any(Function.class));
+        doReturn(new CreateSecurityGroupResult().withGroupId("sg-1234")).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<CreateSecurityGroupRequest>any(CreateSecurityGroupRequest.class), any(Function.class));
+        doReturn(new AuthorizeSecurityGroupIngressResult()).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<AuthorizeSecurityGroupIngressRequest>any(AuthorizeSecurityGroupIngressRequest.class), any(Function.class));
+        doThrow(insufficientCapacity)
+                .doReturn(new RunInstancesResult().withReservation(new Reservation().withInstances(instance)))
+                .when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<RunInstancesRequest>any(RunInstancesRequest.class), any(Function.class));
+
+        final InstanceTypeFallback instanceTypeFallback =
+                new InstanceTypeFallback(Arrays.asList("m4.large", "m4.xlarge"), System::currentTimeMillis);
+        final CreateHandler handler = new CreateHandler(null, instanceTypeFallback);
+
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, null, logger);
+
+        final ArgumentCaptor<AmazonWebServiceRequest> requests = ArgumentCaptor.forClass(AmazonWebServiceRequest.class);
+        verify(proxy, atLeastOnce()).injectCredentialsAndInvoke(requests.capture(), any(Function.class));
+        assertThat(requests.getAllValues())
+                .filteredOn(RunInstancesRequest.class::isInstance)
+                .extracting(launch -> ((RunInstancesRequest) launch).getInstanceType())
+                .containsExactly("m4.large", "m4.xlarge");
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackContext().getCreatedInstanceIds()).containsExactly("i-1234");
+        assertThat(instanceTypeFallback.candidates("us-west-2a")).containsExactly("m4.xlarge");
+    }
+
+    @Test
+    public void testStabilizationTimeoutRollsBackCreatedResources() {
+        doReturn(new TerminateInstancesResult()).when(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+        doReturn(new DeleteSecurityGroupResult()).when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final CreateHandler handler = new CreateHandler();
+
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final CallbackContext context = CallbackContext.builder()
+                .stabilizationRetriesRemaining(0)
+                .instance(new Instance().withInstanceId("i-1234").withState(new InstanceState().withName("pending")))
+                .createdInstanceIds(Arrays.asList("i-1234"))
+                .createdSecurityGroupIds(Arrays.asList("sg-1234"))
+                .build();
+
+        assertThatThrownBy(() -> handler.handleRequest(proxy, request, context, logger))
+                .hasMessage(EXPECTED_TIMEOUT_MESSAGE);
+        verify(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+        verify(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testSecurityGroupStillInUseIsReleasedOnLaterInvocations() {
+        final AmazonServiceException dependencyViolation = new AmazonServiceException("resource sg-1234 has a dependent object");
+        dependencyViolation.setErrorCode("DependencyViolation");
+        doReturn(new TerminateInstancesResult()).when(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+        doThrow(dependencyViolation, dependencyViolation, dependencyViolation, dependencyViolation, dependencyViolation)
+                .doReturn(new DeleteSecurityGroupResult())
+                .when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final CreateHandler handler = new CreateHandler(null, InstanceTypeFallback.fromEnvironment(), new VirtualClock());
+
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final CallbackContext context = CallbackContext.builder()
+                .stabilizationRetriesRemaining(0)
+                .instance(new Instance().withInstanceId("i-1234").withState(new InstanceState().withName("pending")))
+                .createdInstanceIds(Arrays.asList("i-1234"))
+                .createdSecurityGroupIds(Arrays.asList("sg-1234"))
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, context, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackDelaySeconds()).isEqualTo(30);
+        assertThat(response.getCallbackContext().getRollbackCause()).isEqualTo(EXPECTED_TIMEOUT_MESSAGE);
+        assertThat(response.getCallbackContext().getCreatedSecurityGroupIds()).containsExactly("sg-1234");
+
+        assertThatThrownBy(() -> handler.handleRequest(proxy, request, response.getCallbackContext(), logger))
+                .hasMessage(EXPECTED_TIMEOUT_MESSAGE)
+                .hasNoSuppressedExceptions();
+    }
+
+    @Test
+    public void testRollbackGivesUpOnceItsRetriesAreSpent() {
+        final AmazonServiceException dependencyViolation = new AmazonServiceException("resource sg-1234 has a dependent object");
+        dependencyViolation.setErrorCode("DependencyViolation");
+        doThrow(dependencyViolation).when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final CreateHandler handler = new CreateHandler(null, InstanceTypeFallback.fromEnvironment(), new VirtualClock());
+
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final CallbackContext context = CallbackContext.builder()
+                .rollbackCause(EXPECTED_TIMEOUT_MESSAGE)
+                .rollbackRetriesRemaining(1)
+                .createdInstanceIds(Collections.emptyList())
+                .createdSecurityGroupIds(Arrays.asList("sg-1234"))
+                .build();
+
+        assertThatThrownBy(() -> handler.handleRequest(proxy, request, context, logger))
+                .hasMessage(EXPECTED_TIMEOUT_MESSAGE)
+                .satisfies(e -> assertThat(e.getSuppressed()).containsExactly(dependencyViolation));
+    }
+
+    @Test
+    public void testTransientDescribeFailureWhilePollingIsRetried() {
+        doThrow(new SdkClientException("Unable to execute HTTP request: Read timed out"))
+                .when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        final CreateHandler handler = new CreateHandler(null, InstanceTypeFallback.fromEnvironment(), new VirtualClock());
+
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final Instance pending = new Instance().withInstanceId("i-1234").withState(new InstanceState().withName("pending"));
+        final CallbackContext context = CallbackContext.builder()
+                .stabilizationRetriesRemaining(30)
+                .instance(pending)
+                .createdInstanceIds(Arrays.asList("i-1234"))
+                .createdSecurityGroupIds(Arrays.asList("sg-1234"))
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, context, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackContext().getInstance()).isEqualTo(pending);
+        assertThat(response.getCallbackContext().getStabilizationRetriesRemaining()).isEqualTo(29);
+        assertThat(response.getCallbackContext().getCreatedSecurityGroupIds()).containsExactly("sg-1234");
+        verify(proxy, never()).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testInvalidModelIsRejectedBeforeAnyEc2Call() {
+        final CreateHandler handler = new CreateHandler();
+
+        final ResourceModel model = ResourceModel.builder().name("My WordPress Site").subnetId("subnet-1234abcd").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, null, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+        assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.InvalidRequest);
+        assertThat(response.getMessage()).startsWith("Name must match");
+        verifyNoInteractions(proxy);
+    }
+
+    @Test
+    public void testOpenCircuitDefersCreateWithoutCallingEc2() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(() -> 0L);
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS; i++) {
+            circuitBreaker.onError("eu-west-3", CircuitBreaker.OperationClass.MUTATE, new SdkClientException("Read timed out"));
+        }
+        final CreateHandler handler = new CreateHandler(null, InstanceTypeFallback.fromEnvironment(), new VirtualClock(), circuitBreaker);
+
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").region("eu-west-3").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, null, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackDelaySeconds()).isPositive();
+        assertThat(response.getCallbackContext().getInstance()).isNull();
+        assertThat(response.getCallbackContext().getStabilizationRetriesRemaining()).isEqualTo(60);
+        verifyNoInteractions(proxy);
+    }
+
+    @Test
+    public void testOpenCircuitDuringLaunchKeepsWhatWasCreatedAndRetriesLater() {
+        doReturn(new DescribeSubnetsResult().withSubnets(new Subnet().withVpcId("vpc-1234"))).when(proxy).injectCredentialsAndInvoke(any(DescribeSubnetsRequest.class), any(Function.class));
+        doReturn(new CreateSecurityGroupResult().withGroupId("sg-1234")).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<CreateSecurityGroupRequest>any(CreateSecurityGroupRequest.class), any(Function.class));
+        doReturn(new AuthorizeSecurityGroupIngressResult()).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<AuthorizeSecurityGroupIngressRequest>any(AuthorizeSecurityGroupIngressRequest.class), any(Function.class));
+        doThrow(new CircuitBreaker.OpenException("us-west-2/MUTATE", 5_000)).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<RunInstancesRequest>any(RunInstancesRequest.class), any(Function.class));
+
+        final CreateHandler handler = new CreateHandler();
+
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, null, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackDelaySeconds()).isEqualTo(5);
+        assertThat(response.getCallbackContext().getInstance()).isNull();
+        assertThat(response.getCallbackContext().getCreatedSecurityGroupIds()).containsExactly("sg-1234");
+        verify(proxy, never()).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testResumedLaunchReleasesWhatTheInterruptedAttemptCreated() {
+        final Instance instance = new Instance().withInstanceId("i-1234").withState(new InstanceState().withName("pending"));
+        doReturn(new DescribeSubnetsResult().withSubnets(new Subnet().withVpcId("vpc-1234"))).when(proxy).injectCredentialsAndInvoke(any(DescribeSubnetsRequest.class), any(Function.class));
+        doReturn(new CreateSecurityGroupResult().withGroupId("sg-5678")).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<CreateSecurityGroupRequest>any(CreateSecurityGroupRequest.class), any(Function.class));
+        doReturn(new AuthorizeSecurityGroupIngressResult()).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<AuthorizeSecurityGroupIngressRequest>any(AuthorizeSecurityGroupIngressRequest.class), any(Function.class));
+        doReturn(new RunInstancesResult().withReservation(new Reservation().withInstances(instance))).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<RunInstancesRequest>any(RunInstancesRequest.class), any(Function.class));
+        doReturn(new DeleteSecurityGroupResult()).when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final CreateHandler handler = new CreateHandler();
+
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final CallbackContext interrupted = CallbackContext.builder()
+                .stabilizationRetriesRemaining(60)
+                .createdInstanceIds(Collections.emptyList())
+                .createdSecurityGroupIds(Collections.singletonList("sg-1234"))
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, interrupted, logger);
+
+        final ArgumentCaptor<AmazonWebServiceRequest> requests = ArgumentCaptor.forClass(AmazonWebServiceRequest.class);
+        verify(proxy, atLeastOnce()).injectCredentialsAndInvoke(requests.capture(), any(Function.class));
+        assertThat(requests.getAllValues())
+                .filteredOn(DeleteSecurityGroupRequest.class::isInstance)
+                .extracting(delete -> ((DeleteSecurityGroupRequest) delete).getGroupId())
+                .containsExactly("sg-1234");
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackContext().getCreatedSecurityGroupIds()).containsExactly("sg-5678");
+        assertThat(response.getCallbackContext().getCreatedInstanceIds()).containsExactly("i-1234");
+    }
+
+    @Test
+    public void testOpenCircuitWhilePollingDoesNotRollBack() {
+        doThrow(new CircuitBreaker.OpenException("us-west-2/DESCRIBE", 5_000)).when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        final CreateHandler handler = new CreateHandler(null, InstanceTypeFallback.fromEnvironment(), new VirtualClock());
+
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final CallbackContext context = CallbackContext.builder()
+                .stabilizationRetriesRemaining(30)
+                .instance(new Instance().withInstanceId("i-1234").withState(new InstanceState().withName("pending")))
+                .createdInstanceIds(Arrays.asList("i-1234"))
+                .createdSecurityGroupIds(Arrays.asList("sg-1234"))
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, context, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackDelaySeconds()).isEqualTo(5);
+        assertThat(response.getCallbackContext()).isSameAs(context);
+        assertThat(response.getCallbackContext().getStabilizationRetriesRemaining()).isEqualTo(30);
+        verify(proxy, never()).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+    }
+
     @Test
     public void testStabilizationTimeout() {
         final CreateHandler handler = new CreateHandler();
 
-        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234").build();
+        final ResourceModel model = ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build();
 
         final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
                 .desiredResourceState(model)
@@ -0,0 +1,114 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DeleteSecurityGroupRequest;
+import com.amazonaws.services.ec2.model.DeleteSecurityGroupResult;
+import com.amazonaws.services.ec2.model.TerminateInstancesRequest;
+import com.amazonaws.services.ec2.model.TerminateInstancesResult;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class CreateRollbackTest {
+
+    @Mock
+    private AmazonWebServicesClientProxy proxy;
+
+    @Mock
+    private AmazonEC2 ec2Client;
+
+    @BeforeEach
+    public void setup() {
+        proxy = mock(AmazonWebServicesClientProxy.class);
+        ec2Client = mock(AmazonEC2.class);
+    }
+
+    private static AmazonServiceException serviceException(final String errorCode) {
+        final AmazonServiceException exception = new AmazonServiceException(errorCode);
+        exception.setErrorCode(errorCode);
+        return exception;
+    }
+
+    @Test
+    public void testNothingToRollBack() {
+        final List<Exception> failures = new CreateRollback(proxy, ec2Client, millis -> { })
+                .rollBack(Collections.emptyList(), Collections.emptyList());
+
+        assertThat(failures).isEmpty();
+        verifyNoInteractions(proxy);
+    }
+
+    @Test
+    public void testInstancesAndSecurityGroupsReleased() {
+        doReturn(new TerminateInstancesResult()).when(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+        doReturn(new DeleteSecurityGroupResult()).when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final List<Exception> failures = new CreateRollback(proxy, ec2Client, millis -> { })
+                .rollBack(Arrays.asList("i-1234"), Arrays.asList("sg-1234", "sg-5678"));
+
+        assertThat(failures).isEmpty();
+        verify(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+        verify(proxy, times(2)).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testSecurityGroupRetriedUntilInstanceReleasesIt() {
+        doThrow(serviceException("DependencyViolation"))
+                .doThrow(serviceException("DependencyViolation"))
+                .doReturn(new DeleteSecurityGroupResult())
+                .when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final List<Exception> failures = new CreateRollback(proxy, ec2Client, millis -> { })
+                .rollBack(Collections.emptyList(), Arrays.asList("sg-1234"));
+
+        assertThat(failures).isEmpty();
+        verify(proxy, times(3)).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testAlreadyDeletedResourcesAreNotRetried() {
+        doThrow(serviceException("InvalidInstanceID.NotFound"))
+                .when(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+        doThrow(serviceException("InvalidGroup.NotFound"))
+                .when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final List<Exception> failures = new CreateRollback(proxy, ec2Client, millis -> { })
+                .rollBack(Arrays.asList("i-1234"), Arrays.asList("sg-1234"));
+
+        assertThat(failures).isEmpty();
+        verify(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+        verify(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testFailuresReportedOnceRetriesAreExhausted() {
+        doThrow(serviceException("DependencyViolation"))
+                .when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final List<Exception> failures = new CreateRollback(proxy, ec2Client, millis -> { })
+                .rollBack(Collections.emptyList(), Arrays.asList("sg-1234"));
+
+        assertThat(failures).hasSize(1);
+        assertThat(((AmazonServiceException) failures.get(0)).getErrorCode()).isEqualTo("DependencyViolation");
+        verify(proxy, times(5)).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.testing.wordpress;
 
+import com.amazonaws.SdkClientException;
 import com.amazonaws.services.ec2.model.DeleteSecurityGroupRequest;
 import com.amazonaws.services.ec2.model.DeleteSecurityGroupResult;
 import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
@@ -29,7 +30,12 @@ import java.util.function.Function;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 @ExtendWith(MockitoExtension.class)
 public class DeleteHandlerTest {
@@ -108,11 +114,15 @@ public class DeleteHandlerTest {
     }
 
     @Test
-    public void testInProgressStateSecurityGroupsNotGathered() {
+    public void testDiscoveryAndTerminateHappenInOneInvocation() {
+        final InstanceState shuttingDownState = new InstanceState().withName("shutting-down");
         final DescribeInstancesResult describeInstancesResult =
                 new DescribeInstancesResult().withReservations(new Reservation().withInstances(new Instance().withState(new InstanceState().withName("running"))
                         .withSecurityGroups(new GroupIdentifier().withGroupId("sg-1234"))));
         doReturn(describeInstancesResult).when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+        final TerminateInstancesResult terminateInstancesResult =
+                new TerminateInstancesResult().withTerminatingInstances(new InstanceStateChange().withCurrentState(shuttingDownState));
+        doReturn(terminateInstancesResult).when(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
 
         final DeleteHandler handler = new DeleteHandler();
 
@@ -128,17 +138,76 @@ public class DeleteHandlerTest {
         final CallbackContext desiredOutputContext = CallbackContext.builder()
                 .stabilizationRetriesRemaining(60)
                 .instanceSecurityGroups(Arrays.asList("sg-1234"))
+                .instance(new Instance().withState(shuttingDownState))
+                .traceId(response.getCallbackContext().getTraceId())
                 .build();
         assertThat(response).isNotNull();
         assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackContext().getTraceId()).isNotNull();
         assertThat(response.getCallbackContext()).isEqualToComparingFieldByField(desiredOutputContext);
         assertThat(response.getCallbackDelaySeconds()).isEqualTo(0);
         assertThat(response.getResourceModel()).isEqualTo(request.getDesiredResourceState());
         assertThat(response.getResourceModels()).isNull();
         assertThat(response.getMessage()).isNull();
         assertThat(response.getErrorCode()).isNull();
+        verify(proxy, times(1)).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+        verify(proxy, times(1)).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testInstanceAlreadyShuttingDownIsNotTerminatedAgain() {
+        final Instance shuttingDown = new Instance()
+                .withInstanceId("i-1234")
+                .withState(new InstanceState().withName("shutting-down"))
+                .withSecurityGroups(new GroupIdentifier().withGroupId("sg-1234"));
+        doReturn(new DescribeInstancesResult().withReservations(new Reservation().withInstances(shuttingDown)))
+                .when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        final DeleteHandler handler = new DeleteHandler(null);
+
+        final ResourceModel model = ResourceModel.builder().instanceId("i-1234").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, null, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackContext().getInstance()).isEqualTo(shuttingDown);
+        assertThat(response.getCallbackContext().getInstanceSecurityGroups()).containsExactly("sg-1234");
+        verify(proxy, never()).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testInstanceTerminatedRightAwayCompletesInOneInvocation() {
+        doReturn(new DescribeInstancesResult().withReservations(new Reservation().withInstances(new Instance().withState(new InstanceState().withName("stopped"))
+                .withSecurityGroups(new GroupIdentifier().withGroupId("sg-1234")))))
+                .when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+        doReturn(new TerminateInstancesResult().withTerminatingInstances(new InstanceStateChange().withCurrentState(new InstanceState().withName("terminated"))))
+                .when(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+        doReturn(new DeleteSecurityGroupResult()).when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final DeleteHandler handler = new DeleteHandler(null);
+
+        final ResourceModel model = ResourceModel.builder().instanceId("i-1234").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, null, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        verify(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
     }
 
+    /**
+     * A context from before discovery and terminate were combined: security groups known, no
+     * terminate issued yet.
+     */
     @Test
     public void testInProgressStateSecurityGroupsGathered() {
         final InstanceState inProgressState = new InstanceState().withName("in-progress");
@@ -157,6 +226,7 @@ public class DeleteHandlerTest {
         final CallbackContext context = CallbackContext.builder()
                 .stabilizationRetriesRemaining(60)
                 .instanceSecurityGroups(Arrays.asList("sg-1234"))
+                .traceId("trace-1234")
                 .build();
 
         final ProgressEvent<ResourceModel, CallbackContext> response
@@ -166,6 +236,7 @@ public class DeleteHandlerTest {
                 .stabilizationRetriesRemaining(60)
                 .instanceSecurityGroups(context.getInstanceSecurityGroups())
                 .instance(new Instance().withState(inProgressState))
+                .traceId("trace-1234")
                 .build();
 
         assertThat(response).isNotNull();
@@ -187,7 +258,8 @@ public class DeleteHandlerTest {
                 new DescribeInstancesResult().withReservations(new Reservation().withInstances(instance));
         doReturn(describeInstancesResult).when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
 
-        final DeleteHandler handler = new DeleteHandler();
+        final VirtualClock clock = new VirtualClock();
+        final DeleteHandler handler = new DeleteHandler(null, clock);
 
         final ResourceModel model = ResourceModel.builder().instanceId("i-1234").build();
 
@@ -199,6 +271,7 @@ public class DeleteHandlerTest {
                 .stabilizationRetriesRemaining(60)
                 .instance(new Instance().withState(inProgressState).withSecurityGroups(group))
                 .instanceSecurityGroups(Arrays.asList("sg-1234"))
+                .traceId("trace-1234")
                 .build();
 
         final ProgressEvent<ResourceModel, CallbackContext> response
@@ -208,8 +281,10 @@ public class DeleteHandlerTest {
                 .stabilizationRetriesRemaining(59)
                 .instanceSecurityGroups(context.getInstanceSecurityGroups())
                 .instance(new Instance().withState(inProgressState).withSecurityGroups(group))
+                .traceId("trace-1234")
                 .build();
 
+        assertThat(clock.slept()).isEqualTo(5000);
         assertThat(response).isNotNull();
         assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
         assertThat(response.getCallbackContext()).isEqualToComparingFieldByField(desiredOutputContext);
@@ -220,6 +295,96 @@ public class DeleteHandlerTest {
         assertThat(response.getErrorCode()).isNull();
     }
 
+    @Test
+    public void testOpenCircuitDefersDeleteWithoutCallingEc2() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(() -> 0L);
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS; i++) {
+            circuitBreaker.onError("ap-south-1", CircuitBreaker.OperationClass.DESCRIBE, new SdkClientException("Read timed out"));
+        }
+        final DeleteHandler handler = new DeleteHandler(null, new VirtualClock(), circuitBreaker);
+
+        final ResourceModel model = ResourceModel.builder().instanceId("i-1234").region("ap-south-1").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final CallbackContext context = CallbackContext.builder()
+                .stabilizationRetriesRemaining(60)
+                .traceId("trace-1234")
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, context, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackDelaySeconds()).isPositive();
+        assertThat(response.getCallbackContext()).isEqualTo(context);
+        verifyNoInteractions(proxy);
+    }
+
+    @Test
+    public void testCircuitOpeningBetweenDescribeAndTerminateDefersTheTerminate() {
+        final DescribeInstancesResult describeInstancesResult =
+                new DescribeInstancesResult().withReservations(new Reservation().withInstances(new Instance().withState(new InstanceState().withName("running"))
+                        .withSecurityGroups(new GroupIdentifier().withGroupId("sg-1234"))));
+        doReturn(describeInstancesResult).when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+        doThrow(new CircuitBreaker.OpenException("ap-south-1/MUTATE", 5_000))
+                .when(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+
+        final DeleteHandler handler = new DeleteHandler(null, new VirtualClock(), new CircuitBreaker(() -> 0L));
+
+        final ResourceModel model = ResourceModel.builder().instanceId("i-1234").region("ap-south-1").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, null, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackDelaySeconds()).isEqualTo(5);
+        assertThat(response.getCallbackContext().getInstance()).isNull();
+        assertThat(response.getCallbackContext().getStabilizationRetriesRemaining()).isEqualTo(60);
+        assertThat(response.getCallbackContext().getTraceId()).isNotNull();
+        assertThat(response.getErrorCode()).isNull();
+        verify(proxy, never()).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testCircuitOpeningBetweenSecurityGroupDeletesKeepsTheRemainingGroups() {
+        doReturn(new DeleteSecurityGroupResult())
+                .doThrow(new CircuitBreaker.OpenException("ap-south-1/MUTATE", 5_000))
+                .when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final DeleteHandler handler = new DeleteHandler(null, new VirtualClock(), new CircuitBreaker(() -> 0L));
+
+        final ResourceModel model = ResourceModel.builder().instanceId("i-1234").region("ap-south-1").build();
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .build();
+
+        final CallbackContext context = CallbackContext.builder()
+                .stabilizationRetriesRemaining(42)
+                .instanceSecurityGroups(Arrays.asList("sg-1", "sg-2"))
+                .instance(new Instance().withState(new InstanceState().withName("terminated")))
+                .traceId("trace-1234")
+                .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, context, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackDelaySeconds()).isEqualTo(5);
+        assertThat(response.getCallbackContext().getInstanceSecurityGroups()).containsExactly("sg-2");
+        assertThat(response.getCallbackContext().getInstance().getState().getName()).isEqualTo("terminated");
+        assertThat(response.getCallbackContext().getStabilizationRetriesRemaining()).isEqualTo(42);
+        assertThat(response.getCallbackContext().getTraceId()).isEqualTo("trace-1234");
+        verify(proxy, times(2)).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+    }
+
     @Test
     public void testStabilizationTimeout() {
         final DeleteHandler handler = new DeleteHandler();
@@ -0,0 +1,147 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
+import com.amazonaws.services.ec2.model.DescribeSubnetsResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class DescribeCoalescerTest {
+    private static final String ACCOUNT_ID = "123456789012";
+
+    @Mock
+    private AmazonWebServicesClientProxy proxy;
+
+    @Test
+    public void testConcurrentInvocationsForTheSameAccountShareOneResult() throws Exception {
+        final DescribeCoalescer coalescer = new DescribeCoalescer();
+        final AmazonWebServicesClientProxy otherInvocation = mock(AmazonWebServicesClientProxy.class);
+        final DescribeInstancesResult result = new DescribeInstancesResult();
+        final CountDownLatch leaderStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            leaderStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return result;
+        }).when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<DescribeInstancesResult> leader = executor.submit(() -> describe(coalescer, proxy, ACCOUNT_ID));
+            leaderStarted.await(5, TimeUnit.SECONDS);
+            final Future<DescribeInstancesResult> follower = executor.submit(() -> describe(coalescer, otherInvocation, ACCOUNT_ID));
+            while (coalescer.getCollapsedCalls() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isSameAs(result);
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isSameAs(result);
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(proxy, times(1)).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+        verifyNoInteractions(otherInvocation);
+        assertThat(coalescer.getCalls()).isEqualTo(2);
+        assertThat(coalescer.getCollapsedCalls()).isEqualTo(1);
+        assertThat(coalescer.getIssuedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCallsForAnotherAccountAreNotShared() throws Exception {
+        final DescribeCoalescer coalescer = new DescribeCoalescer();
+        final AmazonWebServicesClientProxy otherAccount = mock(AmazonWebServicesClientProxy.class);
+        final CountDownLatch leaderStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            leaderStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new DescribeInstancesResult();
+        }).when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+        final DescribeInstancesResult otherResult = new DescribeInstancesResult();
+        doReturn(otherResult).when(otherAccount).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<DescribeInstancesResult> leader = executor.submit(() -> describe(coalescer, proxy, ACCOUNT_ID));
+            leaderStarted.await(5, TimeUnit.SECONDS);
+
+            final DescribeInstancesResult result = describe(coalescer, otherAccount, "210987654321");
+            assertThat(result).isSameAs(otherResult);
+            release.countDown();
+            leader.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(coalescer.getCollapsedCalls()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRequestWithoutAnAccountOnlySharesThroughItsOwnProxy() {
+        final AmazonWebServicesClientProxy otherInvocation = mock(AmazonWebServicesClientProxy.class);
+        final ResourceHandlerRequest<ResourceModel> withoutAccount = ResourceHandlerRequest.<ResourceModel>builder().build();
+        final ResourceHandlerRequest<ResourceModel> withAccount = ResourceHandlerRequest.<ResourceModel>builder()
+                .awsAccountId(ACCOUNT_ID)
+                .build();
+
+        assertThat(DescribeCoalescer.callerOf(withoutAccount, proxy)).isSameAs(proxy);
+        assertThat(DescribeCoalescer.callerOf(withoutAccount, proxy)).isNotEqualTo(DescribeCoalescer.callerOf(withoutAccount, otherInvocation));
+        assertThat(DescribeCoalescer.callerOf(withAccount, proxy)).isEqualTo(DescribeCoalescer.callerOf(withAccount, otherInvocation));
+    }
+
+    @Test
+    public void testSequentialCallsAreNotCached() {
+        final DescribeCoalescer coalescer = new DescribeCoalescer();
+        doReturn(new DescribeSubnetsResult()).when(proxy).injectCredentialsAndInvoke(any(DescribeSubnetsRequest.class), any(Function.class));
+
+        final DescribeSubnetsRequest request = new DescribeSubnetsRequest().withSubnetIds("subnet-1234");
+        coalescer.invoke(proxy, ACCOUNT_ID, "us-west-2", request, describeSubnetsRequest -> new DescribeSubnetsResult());
+        coalescer.invoke(proxy, ACCOUNT_ID, "us-west-2", request, describeSubnetsRequest -> new DescribeSubnetsResult());
+
+        verify(proxy, times(2)).injectCredentialsAndInvoke(any(DescribeSubnetsRequest.class), any(Function.class));
+        assertThat(coalescer.getCollapsedCalls()).isEqualTo(0);
+        assertThat(coalescer.getIssuedCalls()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailuresAreRethrownAndNotRemembered() {
+        final DescribeCoalescer coalescer = new DescribeCoalescer();
+        doThrow(new IllegalStateException("throttled"))
+                .doReturn(new DescribeInstancesResult())
+                .when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        assertThatThrownBy(() -> describe(coalescer, proxy, ACCOUNT_ID)).hasMessage("throttled");
+        assertThat(describe(coalescer, proxy, ACCOUNT_ID)).isNotNull();
+    }
+
+    private static DescribeInstancesResult describe(final DescribeCoalescer coalescer,
+                                                    final AmazonWebServicesClientProxy proxy,
+                                                    final String awsAccountId) {
+        return coalescer.invoke(proxy, awsAccountId, "us-west-2", new DescribeInstancesRequest().withInstanceIds("i-1234"),
+                describeInstancesRequest -> new DescribeInstancesResult());
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.services.ec2.model.Tag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
+import software.amazon.cloudformation.proxy.OperationStatus;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class DriftBatchReaderTest {
+    @Mock
+    private AmazonWebServicesClientProxy proxy;
+
+    @Mock
+    private AmazonEC2 ec2Client;
+
+    private final Map<String, Instance> fleet = new HashMap<>();
+    private DriftBatchReader reader;
+
+    @BeforeEach
+    public void setup() {
+        reader = new DriftBatchReader(proxy, ec2Client, "us-west-2", 2);
+        fleet.put("i-1", instance("i-1", "running", "54.0.0.1", "SiteOne"));
+        fleet.put("i-2", instance("i-2", "stopped", null, "SiteTwo"));
+        fleet.put("i-3", instance("i-3", "terminated", null, "SiteThree"));
+        fleet.put("i-5", instance("i-5", "running", "54.0.0.5", "SiteFive"));
+    }
+
+    @Test
+    public void testResolvesEveryIdWithOneDescribePerChunk() throws InterruptedException {
+        answerFromFleet();
+
+        final DriftBatchReader.Result result = reader.read(Arrays.asList("i-1", "i-2", "i-3", "i-4", "i-5", "i-1"));
+
+        verify(proxy, times(3)).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+        assertThat(result.getBatchLatenciesInMs()).hasSize(3);
+        assertThat(result.getSites()).containsOnlyKeys("i-1", "i-2", "i-3", "i-4", "i-5");
+        assertThat(result.getSites().get("i-1").getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(result.getSites().get("i-1").getResourceModel()).isEqualTo(ResourceModel.builder()
+                .name("SiteOne")
+                .instanceId("i-1")
+                .publicIp("54.0.0.1")
+                .subnetId("subnet-1234abcd")
+                .region("us-west-2")
+                .build());
+        assertThat(result.getSites().get("i-2").getResourceModel().getPublicIp()).isNull();
+        assertThat(result.getSites().get("i-3").getErrorCode()).isEqualTo(HandlerErrorCode.NotFound);
+        assertThat(result.getSites().get("i-4").getStatus()).isEqualTo(OperationStatus.FAILED);
+        assertThat(result.getSites().get("i-4").getErrorCode()).isEqualTo(HandlerErrorCode.NotFound);
+        assertThat(result.getSites().get("i-5").getResourceModel().getName()).isEqualTo("SiteFive");
+    }
+
+    @Test
+    public void testNothingToReadMakesNoCalls() throws InterruptedException {
+        final DriftBatchReader.Result result = reader.read(Collections.emptyList());
+
+        assertThat(result.getSites()).isEmpty();
+        assertThat(result.getBatchLatenciesInMs()).isEmpty();
+        verifyNoInteractions(proxy);
+    }
+
+    @Test
+    public void testFailedChunkFailsTheRead() {
+        doThrow(new RuntimeException("RequestLimitExceeded"))
+                .when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        assertThatThrownBy(() -> reader.read(Arrays.asList("i-1", "i-2", "i-3")))
+                .hasMessage("RequestLimitExceeded");
+    }
+
+    private void answerFromFleet() {
+        doAnswer(invocation -> {
+            final DescribeInstancesRequest request = invocation.getArgument(0);
+            final List<Instance> instances = request.getFilters().get(0).getValues()
+                    .stream()
+                    .filter(fleet::containsKey)
+                    .map(fleet::get)
+                    .collect(Collectors.toList());
+            return new DescribeInstancesResult().withReservations(new Reservation().withInstances(instances));
+        }).when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+    }
+
+    private static Instance instance(final String instanceId, final String state, final String publicIp, final String name) {
+        return new Instance()
+                .withInstanceId(instanceId)
+                .withState(new InstanceState().withName(state))
+                .withPublicIpAddress(publicIp)
+                .withSubnetId("subnet-1234abcd")
+                .withTags(new Tag().withKey("Name").withValue(name));
+    }
+}
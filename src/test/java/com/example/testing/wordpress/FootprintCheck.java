@@ -0,0 +1,149 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.fasterxml.jackson.core.type.TypeReference;
+import software.amazon.cloudformation.Action;
+import software.amazon.cloudformation.proxy.Credentials;
+import software.amazon.cloudformation.proxy.HandlerRequest;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.cloudformation.proxy.RequestData;
+import software.amazon.cloudformation.resource.Serializer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Startup and footprint budget for the function, which runs with {@code MemorySize: 256} (see
+ * template.yml). Runs a create and a delete lifecycle through the real handlers in a fresh JVM, with
+ * {@link StabilizationSimulator}'s scripted EC2 in place of the service, then measures loaded classes,
+ * heap used after a full GC and resident set size, and exits with status 1 if any of them is over
+ * budget. Before that it reads a request and writes a response with the rpdk {@link Serializer}, as
+ * the generated HandlerWrapper does, since that path loads Jackson modules and serializers by name
+ * where minimizeJar cannot see them. Budgets are system properties ({@value #MAX_LOADED_CLASSES}, {@value #MAX_HEAP_MB},
+ * {@value #MAX_RESIDENT_MB}); a budget of 0 is not checked. Resident memory is read from
+ * {@code /proc/self/status}, so it is only checked on Linux, as on Lambda.
+ *
+ * The {@code slim} profile runs it against the minimized shaded jar in the verify phase. It only
+ * means something in a JVM of its own, with nothing but the jar and the test classes on the
+ * classpath, e.g.
+ * {@code java -XX:MaxRAM=256m -cp target/example-testing-wordpress-handler-1.0-SNAPSHOT.jar:target/test-classes com.example.testing.wordpress.FootprintCheck}.
+ */
+public class FootprintCheck {
+    static final String MAX_LOADED_CLASSES = "footprint.maxLoadedClasses";
+    static final String MAX_HEAP_MB = "footprint.maxHeapMb";
+    static final String MAX_RESIDENT_MB = "footprint.maxResidentMb";
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+
+    public static void main(final String[] args) throws IOException {
+        roundTripThroughWrapperSerializer();
+        final long startupInMs = runLifecycles();
+        System.gc();
+
+        final long loadedClasses = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        final long heapInMb = heap.getUsed() >> 20;
+        final long residentInMb = residentSetSizeInKb() >> 10;
+
+        System.out.printf("startup %d ms  loaded classes %d  heap used %d MB (committed %d MB)  resident %s MB%n",
+                startupInMs, loadedClasses, heapInMb, heap.getCommitted() >> 20,
+                residentInMb < 0 ? "n/a" : Long.toString(residentInMb));
+
+        final List<String> overBudget = new ArrayList<>();
+        check(overBudget, MAX_LOADED_CLASSES, loadedClasses);
+        check(overBudget, MAX_HEAP_MB, heapInMb);
+        if (residentInMb >= 0) {
+            check(overBudget, MAX_RESIDENT_MB, residentInMb);
+        }
+        if (!overBudget.isEmpty()) {
+            overBudget.forEach(System.err::println);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The wrapper's side of an invocation, short of calling AWS: a re-invocation request carrying a callback
+     * context is deserialized, and a progress event carrying it back is serialized.
+     */
+    private static void roundTripThroughWrapperSerializer() throws IOException {
+        final Serializer serializer = new Serializer();
+        final RequestData<ResourceModel, Object> requestData = new RequestData<>();
+        requestData.setCallerCredentials(new Credentials("AKIDEXAMPLE", "secret", "token"));
+        requestData.setLogicalResourceId("MyWordPressSite");
+        requestData.setResourceProperties(ResourceModel.builder().name("MyWordPressSite").subnetId("subnet-1234abcd").build());
+        final HandlerRequest<ResourceModel, CallbackContext, Object> sent = new HandlerRequest<>();
+        sent.setAction(Action.CREATE);
+        sent.setAwsAccountId("123456789012");
+        sent.setRegion("us-west-2");
+        sent.setResourceType("Example::Testing::WordPress");
+        sent.setRequestData(requestData);
+        sent.setCallbackContext(CallbackContext.builder()
+                .instance(new Instance().withInstanceId("i-1234").withState(new InstanceState().withName("pending")))
+                .stabilizationRetriesRemaining(59)
+                .build());
+
+        final HandlerRequest<ResourceModel, CallbackContext, Object> received = serializer.deserialize(serializer.serialize(sent),
+                new TypeReference<HandlerRequest<ResourceModel, CallbackContext, Object>>() {
+                });
+        if (!sent.getCallbackContext().equals(received.getCallbackContext())) {
+            throw new IllegalStateException("Callback context did not survive the wrapper's serializer: " + received.getCallbackContext());
+        }
+        serializer.serialize(ProgressEvent.<ResourceModel, CallbackContext>builder()
+                .resourceModel(received.getRequestData().getResourceProperties())
+                .callbackContext(received.getCallbackContext())
+                .status(OperationStatus.IN_PROGRESS)
+                .build());
+    }
+
+    /**
+     * @return milliseconds from JVM start to the end of the first create lifecycle, i.e. a cold start
+     */
+    private static long runLifecycles() {
+        final StabilizationSimulator simulator = new StabilizationSimulator();
+        requireSuccess(simulator.simulate(StabilizationSimulator.Operation.CREATE,
+                Collections.singletonList(StabilizationSimulator.Script.builder().runningAfterMs(60_000).build())));
+        final long startupInMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        requireSuccess(simulator.simulate(StabilizationSimulator.Operation.DELETE,
+                Collections.singletonList(StabilizationSimulator.Script.builder().terminatedAfterMs(30_000).build())));
+        return startupInMs;
+    }
+
+    private static void requireSuccess(final List<StabilizationSimulator.Outcome> outcomes) {
+        for (final StabilizationSimulator.Outcome outcome : outcomes) {
+            if (!outcome.isSucceeded()) {
+                throw new IllegalStateException("Lifecycle failed: " + outcome.getFailure());
+            }
+        }
+    }
+
+    private static void check(final List<String> overBudget, final String budget, final long measured) {
+        final long limit = Long.getLong(budget, 0);
+        if (limit > 0 && measured > limit) {
+            overBudget.add(budget + " exceeded: " + measured + " > " + limit);
+        }
+    }
+
+    /**
+     * @return VmRSS in KB, or -1 where /proc is not available
+     */
+    private static long residentSetSizeInKb() throws IOException {
+        if (!Files.isReadable(PROC_STATUS)) {
+            return -1;
+        }
+        for (final String line : Files.readAllLines(PROC_STATUS, StandardCharsets.UTF_8)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return -1;
+    }
+}
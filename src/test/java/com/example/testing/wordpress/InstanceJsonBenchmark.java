@@ -0,0 +1,168 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.services.ec2.model.CpuOptions;
+import com.amazonaws.services.ec2.model.EbsInstanceBlockDevice;
+import com.amazonaws.services.ec2.model.GroupIdentifier;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceBlockDeviceMapping;
+import com.amazonaws.services.ec2.model.InstanceNetworkInterface;
+import com.amazonaws.services.ec2.model.InstanceNetworkInterfaceAttachment;
+import com.amazonaws.services.ec2.model.InstancePrivateIpAddress;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.Monitoring;
+import com.amazonaws.services.ec2.model.Placement;
+import com.amazonaws.services.ec2.model.Tag;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Compares a callback context round trip (serialize, then deserialize) with the instance in its
+ * compact {@link InstanceJson} form against the previous path, the whole SDK {@link Instance}
+ * bean-mapped. Both go through a shared mapper and are read back through a type reference, as the
+ * plugin's serializer does. Reports time, bytes allocated and JSON size per round trip for an
+ * instance as RunInstances returns it. Not part of the unit test run; invoke with the test
+ * classpath, e.g.
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.testing.wordpress.InstanceJsonBenchmark}.
+ */
+public class InstanceJsonBenchmark {
+    private static final int ITERATIONS = 200_000;
+    private static final TypeReference<CallbackContext> CONTEXT_TYPE = new TypeReference<CallbackContext>() {
+    };
+
+    /**
+     * Restores plain bean mapping of the instance, i.e. the behaviour before {@link InstanceJson}.
+     */
+    private abstract static class BeanMappedInstance {
+        @JsonSerialize(using = JsonSerializer.None.class)
+        @JsonDeserialize(using = JsonDeserializer.None.class)
+        private Instance instance;
+    }
+
+    interface RoundTrip {
+        String run(CallbackContext callbackContext) throws Exception;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final ObjectMapper compactMapper = new ObjectMapper()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        final ObjectMapper beanMapper = new ObjectMapper()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .addMixIn(CallbackContext.class, BeanMappedInstance.class);
+        final CallbackContext callbackContext = CallbackContext.builder()
+                .instance(launchedInstance())
+                .stabilizationRetriesRemaining(60)
+                .createdInstanceIds(Arrays.asList("i-0123456789abcdef0"))
+                .createdSecurityGroupIds(Arrays.asList("sg-0123456789abcdef0"))
+                .traceId("6f1c2f7e-3a1b-4c55-9d5e-2b0b7a1c9e10")
+                .build();
+
+        final RoundTrip previous = context -> {
+            final String json = beanMapper.writeValueAsString(context);
+            beanMapper.readValue(json, CONTEXT_TYPE);
+            return json;
+        };
+        final RoundTrip compact = context -> {
+            final String json = compactMapper.writeValueAsString(context);
+            compactMapper.readValue(json, CONTEXT_TYPE);
+            return json;
+        };
+
+        for (int round = 0; round < 3; round++) {
+            final boolean report = round == 2;
+            measure("bean-mapped", previous, callbackContext, report);
+            measure("InstanceJson", compact, callbackContext, report);
+        }
+    }
+
+    private static void measure(final String label, final RoundTrip roundTrip, final CallbackContext callbackContext, final boolean report) throws Exception {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        int jsonLength = 0;
+
+        final long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            jsonLength = roundTrip.run(callbackContext).length();
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        if (report) {
+            System.out.printf("%-12s %8.0f ns/round trip %8.0f bytes/round trip %6d chars of JSON%n",
+                    label, (double) elapsed / ITERATIONS, (double) allocated / ITERATIONS, jsonLength);
+        }
+    }
+
+    private static Instance launchedInstance() {
+        final GroupIdentifier securityGroup = new GroupIdentifier()
+                .withGroupId("sg-0123456789abcdef0")
+                .withGroupName("MyWordPressSite-0f8fad5b-d9cb-469f-a165-70867728950e");
+        return new Instance()
+                .withInstanceId("i-0123456789abcdef0")
+                .withImageId("ami-04fb0368671b6f138")
+                .withInstanceType("m4.large")
+                .withState(new InstanceState().withCode(0).withName("pending"))
+                .withPrivateDnsName("ip-10-0-0-12.us-west-2.compute.internal")
+                .withPrivateIpAddress("10.0.0.12")
+                .withPublicIpAddress("54.0.0.12")
+                .withSubnetId("subnet-1234abcd")
+                .withVpcId("vpc-1234abcd")
+                .withArchitecture("x86_64")
+                .withHypervisor("xen")
+                .withVirtualizationType("hvm")
+                .withRootDeviceName("/dev/xvda")
+                .withRootDeviceType("ebs")
+                .withEbsOptimized(false)
+                .withEnaSupport(true)
+                .withSourceDestCheck(true)
+                .withAmiLaunchIndex(0)
+                .withLaunchTime(new Date(0))
+                .withClientToken("6f1c2f7e-3a1b-4c55-9d5e-2b0b7a1c9e10")
+                .withPlacement(new Placement().withAvailabilityZone("us-west-2a").withTenancy("default").withGroupName(""))
+                .withMonitoring(new Monitoring().withState("disabled"))
+                .withCpuOptions(new CpuOptions().withCoreCount(1).withThreadsPerCore(2))
+                .withSecurityGroups(securityGroup)
+                .withTags(new Tag().withKey("Name").withValue("MyWordPressSite"))
+                .withBlockDeviceMappings(new InstanceBlockDeviceMapping()
+                        .withDeviceName("/dev/xvda")
+                        .withEbs(new EbsInstanceBlockDevice()
+                                .withVolumeId("vol-0123456789abcdef0")
+                                .withStatus("attaching")
+                                .withDeleteOnTermination(true)
+                                .withAttachTime(new Date(0))))
+                .withNetworkInterfaces(new InstanceNetworkInterface()
+                        .withNetworkInterfaceId("eni-0123456789abcdef0")
+                        .withSubnetId("subnet-1234abcd")
+                        .withVpcId("vpc-1234abcd")
+                        .withDescription("")
+                        .withOwnerId("123456789012")
+                        .withStatus("in-use")
+                        .withMacAddress("02:00:00:00:00:01")
+                        .withPrivateIpAddress("10.0.0.12")
+                        .withPrivateDnsName("ip-10-0-0-12.us-west-2.compute.internal")
+                        .withSourceDestCheck(true)
+                        .withGroups(securityGroup)
+                        .withAttachment(new InstanceNetworkInterfaceAttachment()
+                                .withAttachmentId("eni-attach-0123456789abcdef0")
+                                .withDeviceIndex(0)
+                                .withStatus("attaching")
+                                .withAttachTime(new Date(0))
+                                .withDeleteOnTermination(true))
+                        .withPrivateIpAddresses(new InstancePrivateIpAddress()
+                                .withPrimary(true)
+                                .withPrivateIpAddress("10.0.0.12")
+                                .withPrivateDnsName("ip-10-0-0-12.us-west-2.compute.internal")));
+    }
+}
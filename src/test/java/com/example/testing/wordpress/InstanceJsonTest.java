@@ -0,0 +1,96 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.services.ec2.model.GroupIdentifier;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.Placement;
+import com.amazonaws.services.ec2.model.Tag;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.junit.jupiter.api.Test;
+import software.amazon.cloudformation.resource.Serializer;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InstanceJsonTest {
+    private static final TypeReference<CallbackContext> CONTEXT_TYPE = new TypeReference<CallbackContext>() {
+    };
+
+    private final Serializer serializer = new Serializer();
+
+    @Test
+    public void testContextRoundTripKeepsWhatTheHandlersRead() throws Exception {
+        final CallbackContext context = CallbackContext.builder()
+                .instance(new Instance()
+                        .withInstanceId("i-1234")
+                        .withState(new InstanceState().withName("pending").withCode(0))
+                        .withPublicIpAddress("54.0.0.0")
+                        .withSubnetId("subnet-1234")
+                        .withSecurityGroups(new GroupIdentifier().withGroupId("sg-1234").withGroupName("MySite-sg"))
+                        .withPlacement(new Placement().withAvailabilityZone("us-west-2a"))
+                        .withTags(new Tag().withKey("Name").withValue("MySite")))
+                .stabilizationRetriesRemaining(42)
+                .createdInstanceIds(Arrays.asList("i-1234"))
+                .createdSecurityGroupIds(Arrays.asList("sg-1234"))
+                .traceId("trace-1234")
+                .build();
+
+        final String json = serializer.serialize(context);
+        final CallbackContext read = serializer.deserialize(json, CONTEXT_TYPE);
+
+        assertThat(json).doesNotContain("placement", "tags", "groupName");
+        assertThat(read.getInstance().getInstanceId()).isEqualTo("i-1234");
+        assertThat(read.getInstance().getState().getName()).isEqualTo("pending");
+        assertThat(read.getInstance().getPublicIpAddress()).isEqualTo("54.0.0.0");
+        assertThat(read.getInstance().getSubnetId()).isEqualTo("subnet-1234");
+        assertThat(read.getInstance().getSecurityGroups()).extracting(GroupIdentifier::getGroupId).containsExactly("sg-1234");
+        assertThat(read.getStabilizationRetriesRemaining()).isEqualTo(42);
+        assertThat(read.getCreatedInstanceIds()).containsExactly("i-1234");
+        assertThat(read.getCreatedSecurityGroupIds()).containsExactly("sg-1234");
+        assertThat(read.getTraceId()).isEqualTo("trace-1234");
+    }
+
+    @Test
+    public void testReadsBeanMappedInstancesFromEarlierVersions() throws Exception {
+        final String json = "{\"callGraphs\":{},\"instance\":{\"instanceId\":\"i-1234\",\"instanceType\":\"m4.large\","
+                + "\"productCodes\":[],\"state\":{\"code\":16,\"name\":\"running\"},\"blockDeviceMappings\":[],"
+                + "\"networkInterfaces\":[{\"attachment\":{\"deviceIndex\":0}}],\"securityGroups\":[{\"groupId\":\"sg-1234\",\"groupName\":\"MySite\"}],"
+                + "\"tags\":[]},\"stabilizationRetriesRemaining\":3}";
+
+        final CallbackContext read = serializer.deserialize(json, CONTEXT_TYPE);
+
+        assertThat(read.getInstance().getInstanceId()).isEqualTo("i-1234");
+        assertThat(read.getInstance().getState().getName()).isEqualTo("running");
+        assertThat(read.getInstance().getSecurityGroups()).extracting(GroupIdentifier::getGroupId).containsExactly("sg-1234");
+        assertThat(read.getStabilizationRetriesRemaining()).isEqualTo(3);
+    }
+
+    @Test
+    public void testNullSecurityGroupsAreRead() throws Exception {
+        final String json = "{\"instance\":{\"instanceId\":\"i-1234\",\"securityGroups\":null,\"subnetId\":\"subnet-1234\"}}";
+
+        final CallbackContext read = serializer.deserialize(json, CONTEXT_TYPE);
+
+        assertThat(read.getInstance().getSecurityGroups()).isEmpty();
+        assertThat(read.getInstance().getSubnetId()).isEqualTo("subnet-1234");
+    }
+
+    @Test
+    public void testSecurityGroupsCutOffByTheEndOfInputAreRejected() throws Exception {
+        final TokenBuffer truncated = new TokenBuffer(null, false);
+        truncated.writeStartObject();
+        truncated.writeFieldName("securityGroups");
+        truncated.writeStartArray();
+        truncated.writeString("sg-1234");
+        final JsonParser parser = truncated.asParser();
+        parser.nextToken();
+
+        assertThatThrownBy(() -> new InstanceJson.Deserializer().deserialize(parser, null))
+                .isInstanceOf(JsonParseException.class);
+    }
+}
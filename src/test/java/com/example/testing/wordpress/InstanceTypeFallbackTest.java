@@ -0,0 +1,63 @@
+package com.example.testing.wordpress;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InstanceTypeFallbackTest {
+
+    @Test
+    public void testCapacityFailuresAreRememberedPerZone() {
+        final AtomicLong now = new AtomicLong(0);
+        final InstanceTypeFallback fallback = new InstanceTypeFallback(Arrays.asList("m4.large", "m4.xlarge", "t2.large"), now::get);
+
+        fallback.recordInsufficientCapacity("us-west-2a", "m4.large");
+
+        assertThat(fallback.candidates("us-west-2a")).containsExactly("m4.xlarge", "t2.large");
+        assertThat(fallback.candidates("us-west-2b")).containsExactly("m4.large", "m4.xlarge", "t2.large");
+    }
+
+    @Test
+    public void testCapacityFailuresExpire() {
+        final AtomicLong now = new AtomicLong(0);
+        final InstanceTypeFallback fallback = new InstanceTypeFallback(Arrays.asList("m4.large", "m4.xlarge"), now::get);
+
+        fallback.recordInsufficientCapacity("us-west-2a", "m4.large");
+        now.addAndGet(InstanceTypeFallback.CAPACITY_FAILURE_MEMORY_IN_MS);
+
+        assertThat(fallback.candidates("us-west-2a")).containsExactly("m4.large", "m4.xlarge");
+    }
+
+    @Test
+    public void testEveryTypeUnavailableFallsBackToFullList() {
+        final AtomicLong now = new AtomicLong(0);
+        final InstanceTypeFallback fallback = new InstanceTypeFallback(Arrays.asList("m4.large", "m4.xlarge"), now::get);
+
+        fallback.recordInsufficientCapacity("us-west-2a", "m4.large");
+        fallback.recordInsufficientCapacity("us-west-2a", "m4.xlarge");
+
+        assertThat(fallback.candidates("us-west-2a")).containsExactly("m4.large", "m4.xlarge");
+    }
+
+    @Test
+    public void testAtLeastOneTypeRequired() {
+        assertThatThrownBy(() -> new InstanceTypeFallback(Collections.emptyList(), System::currentTimeMillis))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testConfiguredTypesAreParsedInOrder() {
+        assertThat(InstanceTypeFallback.instanceTypesOf(" m5.large, ,t3.large")).containsExactly("m5.large", "t3.large");
+        assertThat(InstanceTypeFallback.instanceTypesOf(null)).isEqualTo(InstanceTypeFallback.DEFAULT_INSTANCE_TYPES);
+    }
+
+    @Test
+    public void testConfigurationWithOnlyBlankTypesFallsBackToDefaults() {
+        assertThat(InstanceTypeFallback.instanceTypesOf(", ,")).isEqualTo(InstanceTypeFallback.DEFAULT_INSTANCE_TYPES);
+    }
+}
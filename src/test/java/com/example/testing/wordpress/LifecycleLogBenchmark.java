@@ -0,0 +1,83 @@
+package com.example.testing.wordpress;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures the cost of a lifecycle log point on the handler thread: time per call and bytes
+ * allocated per call, with sampling off and on, against an empty loop. Logs go through an async
+ * root logger, as in log4j2.xml, into a RandomAccessFile appender in a temp directory so that
+ * console I/O does not dominate the measurement. Not part of the unit test run; invoke with the test classpath, e.g.
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.testing.wordpress.LifecycleLogBenchmark}.
+ */
+public class LifecycleLogBenchmark {
+    private static final int ITERATIONS = 2_000_000;
+
+    public static void main(final String[] args) throws Exception {
+        System.setProperty("log4j2.enableThreadlocals", "true");
+        System.setProperty("log4j2.enableDirectEncoders", "true");
+        System.setProperty("log4j2.garbagefreeThreadContextMap", "true");
+
+        final Path logFile = Files.createTempFile("lifecycle-log-benchmark", ".log");
+        final ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.add(builder.newAppender("FILE", "RandomAccessFile")
+                .addAttribute("fileName", logFile.toString())
+                .addAttribute("immediateFlush", false)
+                .add(builder.newLayout("PatternLayout")
+                        .addAttribute("pattern", "%d{HH:mm:ss.SSS} [%t] %-5level correlationId=%X{correlationId} - %msg%n")));
+        builder.add(builder.newAsyncRootLogger(Level.INFO)
+                .addAttribute("includeLocation", false)
+                .add(builder.newAppenderRef("FILE")));
+
+        try (LoggerContext context = Configurator.initialize(builder.build())) {
+            final Logger logger = context.getLogger(LifecycleLogBenchmark.class.getName());
+            final LifecycleLog disabled = new LifecycleLog(logger, 0.0);
+            final LifecycleLog enabled = new LifecycleLog(logger, 1.0);
+
+            for (int round = 0; round < 3; round++) {
+                final boolean report = round == 2;
+                measure("baseline", null, report);
+                measure("sampled out", disabled, report);
+                measure("sampled in", enabled, report);
+            }
+        }
+        System.out.printf("log file: %s (%d bytes)%n", logFile, Files.size(logFile));
+    }
+
+    private static void measure(final String label, final LifecycleLog lifecycleLog, final boolean report) {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        if (lifecycleLog != null) {
+            lifecycleLog.begin("benchmark-correlation-id");
+        }
+
+        final long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        final long start = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (lifecycleLog != null) {
+                lifecycleLog.transition("stabilize", "pending", "i-0123456789abcdef0");
+            }
+            sink += i;
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        if (lifecycleLog != null) {
+            lifecycleLog.end();
+        }
+        if (report) {
+            System.out.printf("%-12s %6.1f ns/op %6.2f bytes/op (%d)%n",
+                    label, (double) elapsed / ITERATIONS, (double) allocated / ITERATIONS, sink & 1);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.testing.wordpress;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class LifecycleLogTest {
+
+    @Mock
+    private Logger logger;
+
+    @Test
+    public void testTransitionsAreLoggedWhenSampled() {
+        final LifecycleLog lifecycleLog = new LifecycleLog(logger, 1.0);
+
+        lifecycleLog.begin("token");
+        lifecycleLog.transition("launch", "launched", "i-1234");
+
+        assertThat(lifecycleLog.isSampled()).isTrue();
+        verify(logger).info("phase={} state={} resource={}", "launch", "launched", "i-1234");
+    }
+
+    @Test
+    public void testFailuresAreLoggedEvenWhenNotSampled() {
+        final LifecycleLog lifecycleLog = new LifecycleLog(logger, 0.0);
+        final RuntimeException cause = new RuntimeException("boom");
+
+        lifecycleLog.begin("token");
+        lifecycleLog.transition("create", "started");
+        lifecycleLog.transition("stabilize", "pending", "i-1234", 3);
+
+        assertThat(lifecycleLog.isSampled()).isFalse();
+        verifyNoInteractions(logger);
+
+        lifecycleLog.failure("create", cause);
+        verify(logger).warn(anyString(), eq("create"), any(RuntimeException.class));
+    }
+
+    @Test
+    public void testCorrelationIdIsScopedToTheLifecycle() {
+        final LifecycleLog lifecycleLog = new LifecycleLog(logger, 1.0);
+        final String correlationId = LifecycleLog.correlationIdOf(ResourceHandlerRequest.<ResourceModel>builder()
+                .clientRequestToken("token")
+                .build());
+
+        lifecycleLog.begin(correlationId);
+        assertThat(ThreadContext.get(LifecycleLog.CORRELATION_ID_KEY)).isEqualTo("token");
+
+        lifecycleLog.end();
+        assertThat(ThreadContext.get(LifecycleLog.CORRELATION_ID_KEY)).isNull();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.testing.wordpress;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LifecycleTraceTest {
+
+    @TempDir
+    Path traceDirectory;
+
+    @Test
+    public void testSpansAreAppendedAcrossInvocations() throws Exception {
+        final AtomicLong clock = new AtomicLong(1_000);
+        final LifecycleTrace trace = new LifecycleTrace("create", traceDirectory, clock::get);
+
+        trace.begin("trace-1234");
+        try (LifecycleTrace.Span ignored = trace.span("launch", "m4.large")) {
+            clock.addAndGet(250);
+        }
+        trace.end();
+
+        trace.begin("trace-1234");
+        try (LifecycleTrace.Span ignored = trace.span("describe-instance")) {
+            clock.addAndGet(40);
+        }
+        trace.end();
+
+        final List<String> lines = Files.readAllLines(traceDirectory.resolve("trace-1234.json"), StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0)).isEqualTo("[");
+        assertThat(lines.get(1)).startsWith("{\"name\":\"launch\",\"cat\":\"create\",\"ph\":\"X\",\"ts\":1000,\"dur\":250,")
+                .endsWith("\"args\":{\"traceId\":\"trace-1234\",\"resource\":\"m4.large\"}},");
+        assertThat(lines.get(2)).contains("\"name\":\"describe-instance\"", "\"ts\":1250", "\"dur\":40");
+    }
+
+    @Test
+    public void testDisabledTraceWritesNothing() throws Exception {
+        final LifecycleTrace trace = new LifecycleTrace("delete", null, System::nanoTime);
+
+        trace.begin("trace-1234");
+        try (LifecycleTrace.Span ignored = trace.span("terminate")) {
+            assertThat(trace.isEnabled()).isFalse();
+        }
+        trace.end();
+
+        assertThat(Files.list(traceDirectory)).isEmpty();
+    }
+}
@@ -1,5 +1,12 @@
 package com.example.testing.wordpress;
 
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.services.ec2.model.Tag;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.OperationStatus;
@@ -8,11 +15,19 @@ import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Path;
+import java.util.function.Function;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 public class ListHandlerTest {
@@ -31,7 +46,12 @@ public class ListHandlerTest {
 
     @Test
     public void handleRequest_SimpleSuccess() {
-        final ListHandler handler = new ListHandler();
+        final Instance instance = new Instance().withInstanceId("i-1234").withPublicIpAddress("54.0.0.0")
+            .withSubnetId("subnet-1234").withTags(new Tag().withKey("Name").withValue("MyWordPressSite"));
+        doReturn(new DescribeInstancesResult().withReservations(new Reservation().withInstances(instance)))
+            .when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        final ListHandler handler = new ListHandler(null);
 
         final ResourceModel model = ResourceModel.builder().build();
 
@@ -47,8 +67,105 @@ public class ListHandlerTest {
         assertThat(response.getCallbackContext()).isNull();
         assertThat(response.getCallbackDelaySeconds()).isEqualTo(0);
         assertThat(response.getResourceModel()).isNull();
-        assertThat(response.getResourceModels()).isNotNull();
+        assertThat(response.getResourceModels()).containsExactly(ResourceModel.builder()
+            .name("MyWordPressSite")
+            .instanceId("i-1234")
+            .publicIp("54.0.0.0")
+            .subnetId("subnet-1234")
+            .region("us-west-2")
+            .build());
         assertThat(response.getMessage()).isNull();
         assertThat(response.getErrorCode()).isNull();
     }
+
+    @Test
+    public void handleRequest_ModelWithoutRegionListsTheDefaultRegionFromAnyStack() {
+        final Instance instance = new Instance().withInstanceId("i-1234").withPublicIpAddress("54.0.0.0")
+            .withSubnetId("subnet-1234").withTags(new Tag().withKey("Name").withValue("MyWordPressSite"));
+        doReturn(new DescribeInstancesResult().withReservations(new Reservation().withInstances(instance)))
+            .when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        final ListHandler handler = new ListHandler(null);
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+            .desiredResourceState(ResourceModel.builder().build())
+            .region("eu-central-1")
+            .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+            handler.handleRequest(proxy, request, null, logger);
+
+        final ArgumentCaptor<DescribeInstancesRequest> describe = ArgumentCaptor.forClass(DescribeInstancesRequest.class);
+        verify(proxy).injectCredentialsAndInvoke(describe.capture(), any(Function.class));
+        assertThat(describe.getValue().getFilters())
+            .filteredOn(filter -> "image-id".equals(filter.getName()))
+            .flatExtracting(Filter::getValues)
+            .containsExactly(WordPressAmis.forRegion("us-west-2"));
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getResourceModels()).extracting(ResourceModel::getRegion).containsExactly("us-west-2");
+    }
+
+    @Test
+    public void handleRequest_ServedFromSiteIndex(@TempDir final Path directory) throws Exception {
+        final Instance instance = new Instance().withInstanceId("i-1234").withPublicIpAddress("54.0.0.1")
+            .withState(new InstanceState().withName("running"));
+        doReturn(new DescribeInstancesResult().withReservations(new Reservation().withInstances(instance)))
+            .when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        try (SiteIndex siteIndex = SiteIndex.open(directory.resolve("sites.idx"))) {
+            siteIndex.put(SiteIndexEntry.builder().name("Kept").instanceId("i-1234").publicIp("54.0.0.0").subnetId("subnet-1234").region("us-west-2").build());
+            siteIndex.put(SiteIndexEntry.builder().name("Gone").instanceId("i-5678").region("us-west-2").build());
+            siteIndex.put(SiteIndexEntry.builder().name("Elsewhere").instanceId("i-9999").region("eu-west-1").build());
+
+            final ListHandler handler = new ListHandler(siteIndex);
+
+            final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(ResourceModel.builder().build())
+                .region("eu-west-1")
+                .build();
+
+            final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+            assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+            assertThat(response.getResourceModels()).containsExactly(ResourceModel.builder()
+                .name("Kept")
+                .instanceId("i-1234")
+                .publicIp("54.0.0.1")
+                .subnetId("subnet-1234")
+                .region("us-west-2")
+                .build());
+            assertThat(siteIndex.get("i-9999")).isNotNull();
+        }
+    }
+
+    @Test
+    public void handleRequest_ColdSiteIndexListsSitesFromEc2(@TempDir final Path directory) throws Exception {
+        final Instance instance = new Instance().withInstanceId("i-1234").withPublicIpAddress("54.0.0.1")
+            .withSubnetId("subnet-1234").withTags(new Tag().withKey("Name").withValue("CreatedElsewhere"))
+            .withState(new InstanceState().withName("running"));
+        doReturn(new DescribeInstancesResult().withReservations(new Reservation().withInstances(instance)))
+            .when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        try (SiteIndex siteIndex = SiteIndex.open(directory.resolve("sites.idx"))) {
+            final ListHandler handler = new ListHandler(siteIndex);
+
+            final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(ResourceModel.builder().build())
+                .build();
+
+            final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+            assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+            assertThat(response.getResourceModels()).containsExactly(ResourceModel.builder()
+                .name("CreatedElsewhere")
+                .instanceId("i-1234")
+                .publicIp("54.0.0.1")
+                .subnetId("subnet-1234")
+                .region("us-west-2")
+                .build());
+            assertThat(siteIndex.get("i-1234")).isNotNull();
+        }
+    }
 }
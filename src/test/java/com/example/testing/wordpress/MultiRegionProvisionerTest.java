@@ -0,0 +1,134 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.services.ec2.model.AuthorizeSecurityGroupIngressRequest;
+import com.amazonaws.services.ec2.model.AuthorizeSecurityGroupIngressResult;
+import com.amazonaws.services.ec2.model.CreateSecurityGroupRequest;
+import com.amazonaws.services.ec2.model.CreateSecurityGroupResult;
+import com.amazonaws.services.ec2.model.DeleteSecurityGroupRequest;
+import com.amazonaws.services.ec2.model.DeleteSecurityGroupResult;
+import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
+import com.amazonaws.services.ec2.model.DescribeSubnetsResult;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.services.ec2.model.RunInstancesRequest;
+import com.amazonaws.services.ec2.model.RunInstancesResult;
+import com.amazonaws.services.ec2.model.Subnet;
+import com.amazonaws.services.ec2.model.TerminateInstancesRequest;
+import com.amazonaws.services.ec2.model.TerminateInstancesResult;
+import org.mockito.ArgumentMatchers;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
+import software.amazon.cloudformation.proxy.Logger;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class MultiRegionProvisionerTest {
+
+    @Mock
+    private AmazonWebServicesClientProxy proxy;
+
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    public void setup() {
+        proxy = mock(AmazonWebServicesClientProxy.class);
+        logger = mock(Logger.class);
+    }
+
+    @Test
+    public void testEachRegionCompletesIndependently() {
+        final Instance instance = new Instance().withInstanceId("i-1234").withPublicIpAddress("54.0.0.0")
+                .withState(new InstanceState().withName("running"));
+        doReturn(new DescribeSubnetsResult().withSubnets(new Subnet().withVpcId("vpc-1234"))).when(proxy).injectCredentialsAndInvoke(any(DescribeSubnetsRequest.class), any(Function.class));
+        doReturn(new CreateSecurityGroupResult().withGroupId("sg-1234")).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<CreateSecurityGroupRequest>any(CreateSecurityGroupRequest.class), any(Function.class));
+        doReturn(new AuthorizeSecurityGroupIngressResult()).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<AuthorizeSecurityGroupIngressRequest>any(AuthorizeSecurityGroupIngressRequest.class), any(Function.class));
+        doReturn(new RunInstancesResult().withReservation(new Reservation().withInstances(instance))).when(proxy).injectCredentialsAndInvoke(ArgumentMatchers.<RunInstancesRequest>any(RunInstancesRequest.class), any(Function.class));
+
+        final Map<String, String> subnetIdsByRegion = new LinkedHashMap<>();
+        subnetIdsByRegion.put("us-west-2", "subnet-1234abcd");
+        subnetIdsByRegion.put("ap-south-2", "subnet-5678abcd");
+
+        final Map<String, ProgressEvent<ResourceModel, CallbackContext>> results =
+                new MultiRegionProvisioner(proxy, logger, () -> new CreateHandler(null)).provision("MyWordPressSite", subnetIdsByRegion);
+
+        assertThat(results).containsOnlyKeys("us-west-2", "ap-south-2");
+
+        final ProgressEvent<ResourceModel, CallbackContext> usWest2 = results.get("us-west-2");
+        assertThat(usWest2.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(usWest2.getResourceModel()).isEqualTo(ResourceModel.builder()
+                .name("MyWordPressSite")
+                .subnetId("subnet-1234abcd")
+                .region("us-west-2")
+                .instanceId("i-1234")
+                .publicIp("54.0.0.0")
+                .build());
+
+        final ProgressEvent<ResourceModel, CallbackContext> apSouth2 = results.get("ap-south-2");
+        assertThat(apSouth2.getStatus()).isEqualTo(OperationStatus.FAILED);
+        assertThat(apSouth2.getErrorCode()).isEqualTo(HandlerErrorCode.GeneralServiceException);
+        assertThat(apSouth2.getMessage()).isEqualTo("No WordPress AMI is configured for region ap-south-2");
+    }
+
+    @Test
+    public void testRegionWaitsBetweenInvocationsAndIsRolledBackAtTheDeadline() {
+        doReturn(new TerminateInstancesResult()).when(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+        doReturn(new DeleteSecurityGroupResult()).when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+        final VirtualClock clock = new VirtualClock();
+        final AtomicInteger invocations = new AtomicInteger();
+        final CreateHandler neverDone = new CreateHandler(null) {
+            @Override
+            public ProgressEvent<ResourceModel, CallbackContext> handleRequest(final AmazonWebServicesClientProxy proxy,
+                                                                               final ResourceHandlerRequest<ResourceModel> request,
+                                                                               final CallbackContext callbackContext,
+                                                                               final Logger logger) {
+                invocations.incrementAndGet();
+                return ProgressEvent.<ResourceModel, CallbackContext>builder()
+                        .status(OperationStatus.IN_PROGRESS)
+                        .callbackDelaySeconds(60)
+                        .callbackContext(CallbackContext.builder()
+                                .createdInstanceIds(Collections.singletonList("i-1234"))
+                                .createdSecurityGroupIds(Collections.singletonList("sg-1234"))
+                                .build())
+                        .build();
+            }
+        };
+
+        final ProgressEvent<ResourceModel, CallbackContext> result = new MultiRegionProvisioner(proxy, logger, () -> neverDone, clock, clock::now)
+                .provision("MyWordPressSite", Collections.singletonMap("us-west-2", "subnet-1234abcd"))
+                .get("us-west-2");
+
+        assertThat(result.getStatus()).isEqualTo(OperationStatus.FAILED);
+        assertThat(result.getErrorCode()).isEqualTo(HandlerErrorCode.NotStabilized);
+        assertThat(result.getMessage()).isEqualTo("Timed out provisioning the site in us-west-2");
+        assertThat(invocations.get()).isEqualTo((int) (MultiRegionProvisioner.REGION_DEADLINE_IN_MS / 60_000));
+        assertThat(clock.slept()).isEqualTo(MultiRegionProvisioner.REGION_DEADLINE_IN_MS - 60_000);
+        verify(proxy).injectCredentialsAndInvoke(any(TerminateInstancesRequest.class), any(Function.class));
+        verify(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testNoRegions() {
+        assertThat(new MultiRegionProvisioner(proxy, logger).provision("MyWordPressSite", new LinkedHashMap<>())).isEmpty();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DeleteSecurityGroupRequest;
+import com.amazonaws.services.ec2.model.DeleteSecurityGroupResult;
+import com.amazonaws.services.ec2.model.DescribeNetworkInterfacesRequest;
+import com.amazonaws.services.ec2.model.DescribeNetworkInterfacesResult;
+import com.amazonaws.services.ec2.model.DescribeSecurityGroupsRequest;
+import com.amazonaws.services.ec2.model.DescribeSecurityGroupsResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.GroupIdentifier;
+import com.amazonaws.services.ec2.model.NetworkInterface;
+import com.amazonaws.services.ec2.model.SecurityGroup;
+import com.amazonaws.services.ec2.model.Tag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class OrphanSecurityGroupReclaimerTest {
+    private static final String ORPHAN_NAME = "MySite-0f8fad5b-d9cb-469f-a165-70867728950e";
+    private static final String IN_USE_NAME = "MySite-7c9e6679-7425-40de-944b-e07fc1f90ae7";
+
+    @Mock
+    private AmazonWebServicesClientProxy proxy;
+
+    @Mock
+    private AmazonEC2 ec2Client;
+
+    private VirtualClock clock;
+    private OrphanSecurityGroupReclaimer reclaimer;
+
+    @BeforeEach
+    public void setup() {
+        clock = new VirtualClock();
+        reclaimer = new OrphanSecurityGroupReclaimer(proxy, ec2Client, new RateLimiter(1000), 60_000, clock);
+        final Tag createdBy = new Tag().withKey(CreateHandler.CREATED_BY_TAG_KEY).withValue(CreateHandler.CREATED_BY_TAG_VALUE);
+        doReturn(new DescribeSecurityGroupsResult().withSecurityGroups(
+                new SecurityGroup().withGroupId("sg-orphan").withGroupName(ORPHAN_NAME).withTags(createdBy),
+                new SecurityGroup().withGroupId("sg-in-use").withGroupName(IN_USE_NAME).withTags(createdBy),
+                new SecurityGroup().withGroupId("sg-hand-made").withGroupName("MySite-web").withTags(createdBy),
+                new SecurityGroup().withGroupId("sg-look-alike").withGroupName("MySite-5a1b2c3d-d9cb-469f-a165-70867728950e")))
+                .when(proxy).injectCredentialsAndInvoke(any(DescribeSecurityGroupsRequest.class), any(Function.class));
+        doReturn(new DescribeNetworkInterfacesResult().withNetworkInterfaces(
+                new NetworkInterface().withGroups(new GroupIdentifier().withGroupId("sg-in-use"))))
+                .when(proxy).injectCredentialsAndInvoke(any(DescribeNetworkInterfacesRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testDryRunReportsOrphansWithoutDeleting() throws Exception {
+        final OrphanSecurityGroupReclaimer.Report report = reclaimer.reclaim(true);
+
+        assertThat(report.isDryRun()).isTrue();
+        assertThat(report.getCandidates()).containsExactly("sg-orphan", "sg-in-use");
+        assertThat(report.getOrphans()).containsExactly("sg-orphan");
+        assertThat(report.getDeleted()).isEmpty();
+        assertThat(clock.slept()).isZero();
+        verify(proxy, never()).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+    }
+
+    @Test
+    public void testOnlyGroupsWithTheCreationTagAreSearchedFor() throws Exception {
+        reclaimer.reclaim(true);
+
+        final ArgumentCaptor<AmazonWebServiceRequest> requests = ArgumentCaptor.forClass(AmazonWebServiceRequest.class);
+        verify(proxy, atLeastOnce()).injectCredentialsAndInvoke(requests.capture(), any(Function.class));
+        assertThat(requests.getAllValues())
+                .filteredOn(request -> request instanceof DescribeSecurityGroupsRequest)
+                .flatExtracting(request -> ((DescribeSecurityGroupsRequest) request).getFilters())
+                .contains(new Filter()
+                .withName("tag:" + CreateHandler.CREATED_BY_TAG_KEY)
+                .withValues(CreateHandler.CREATED_BY_TAG_VALUE));
+    }
+
+    @Test
+    public void testOnlyOrphansAreDeleted() throws Exception {
+        doReturn(new DeleteSecurityGroupResult()).when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final OrphanSecurityGroupReclaimer.Report report = reclaimer.reclaim(false);
+
+        assertThat(report.getDeleted()).containsExactly("sg-orphan");
+        assertThat(report.getFailures()).isEmpty();
+        final ArgumentCaptor<AmazonWebServiceRequest> requests = ArgumentCaptor.forClass(AmazonWebServiceRequest.class);
+        verify(proxy, atLeastOnce()).injectCredentialsAndInvoke(requests.capture(), any(Function.class));
+        assertThat(requests.getAllValues())
+                .filteredOn(request -> request instanceof DeleteSecurityGroupRequest)
+                .extracting(request -> ((DeleteSecurityGroupRequest) request).getGroupId())
+                .containsExactly("sg-orphan");
+        // Orphans are confirmed with a second look, after the grace period, before anything is deleted.
+        verify(proxy, times(2)).injectCredentialsAndInvoke(any(DescribeNetworkInterfacesRequest.class), any(Function.class));
+        assertThat(clock.slept()).isEqualTo(60_000);
+    }
+
+    @Test
+    public void testFailedDeletesAreReported() throws Exception {
+        final AmazonServiceException dependencyViolation = new AmazonServiceException("resource sg-orphan has a dependent object");
+        dependencyViolation.setErrorCode("DependencyViolation");
+        doThrow(dependencyViolation).when(proxy).injectCredentialsAndInvoke(any(DeleteSecurityGroupRequest.class), any(Function.class));
+
+        final OrphanSecurityGroupReclaimer.Report report = reclaimer.reclaim(false);
+
+        assertThat(report.getDeleted()).isEmpty();
+        assertThat(report.getFailures()).containsOnlyKeys("sg-orphan");
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.testing.wordpress;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RateLimiterTest {
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstUpToOneSecondOfPermits() {
+        final RateLimiter rateLimiter = new RateLimiter(4);
+        final long now = System.nanoTime();
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(rateLimiter.reserve(now)).isEqualTo(0);
+        }
+        assertThat(rateLimiter.reserve(now)).isEqualTo(ONE_SECOND / 4);
+        assertThat(rateLimiter.reserve(now)).isEqualTo(ONE_SECOND / 2);
+    }
+
+    @Test
+    public void testPermitsRefillOverTime() {
+        final RateLimiter rateLimiter = new RateLimiter(2);
+        final long now = System.nanoTime();
+        rateLimiter.reserve(now);
+        rateLimiter.reserve(now);
+
+        assertThat(rateLimiter.reserve(now + ONE_SECOND / 2)).isEqualTo(0);
+        assertThat(rateLimiter.reserve(now + ONE_SECOND / 2)).isEqualTo(ONE_SECOND / 2);
+    }
+
+    @Test
+    public void testRateMustBePositive() {
+        assertThatThrownBy(() -> new RateLimiter(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
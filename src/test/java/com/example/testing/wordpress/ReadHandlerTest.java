@@ -1,6 +1,13 @@
 package com.example.testing.wordpress;
 
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.Reservation;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ProgressEvent;
@@ -8,11 +15,19 @@ import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Path;
+import java.util.function.Function;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 @ExtendWith(MockitoExtension.class)
 public class ReadHandlerTest {
@@ -31,9 +46,14 @@ public class ReadHandlerTest {
 
     @Test
     public void handleRequest_SimpleSuccess() {
-        final ReadHandler handler = new ReadHandler();
+        final Instance instance = new Instance().withInstanceId("i-1234").withPublicIpAddress("54.0.0.0")
+            .withState(new InstanceState().withName("running"));
+        doReturn(new DescribeInstancesResult().withReservations(new Reservation().withInstances(instance)))
+            .when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        final ReadHandler handler = new ReadHandler(null);
 
-        final ResourceModel model = ResourceModel.builder().build();
+        final ResourceModel model = ResourceModel.builder().instanceId("i-1234").build();
 
         final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
             .desiredResourceState(model)
@@ -47,8 +67,113 @@ public class ReadHandlerTest {
         assertThat(response.getCallbackContext()).isNull();
         assertThat(response.getCallbackDelaySeconds()).isEqualTo(0);
         assertThat(response.getResourceModel()).isEqualTo(request.getDesiredResourceState());
+        assertThat(response.getResourceModel().getPublicIp()).isEqualTo("54.0.0.0");
         assertThat(response.getResourceModels()).isNull();
         assertThat(response.getMessage()).isNull();
         assertThat(response.getErrorCode()).isNull();
     }
+
+    @Test
+    public void handleRequest_TerminatedInstanceNotFound() {
+        final Instance instance = new Instance().withInstanceId("i-1234").withState(new InstanceState().withName("terminated"));
+        doReturn(new DescribeInstancesResult().withReservations(new Reservation().withInstances(instance)))
+            .when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        final ReadHandler handler = new ReadHandler(null);
+
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+            .desiredResourceState(ResourceModel.builder().instanceId("i-1234").build())
+            .build();
+
+        final ProgressEvent<ResourceModel, CallbackContext> response
+            = handler.handleRequest(proxy, request, null, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+        assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.NotFound);
+    }
+
+    @Test
+    public void handleRequest_InstanceUnknownToEc2NotFound(@TempDir final Path directory) throws Exception {
+        final AmazonServiceException notFound = new AmazonServiceException("The instance ID 'i-1234' does not exist");
+        notFound.setStatusCode(400);
+        notFound.setErrorCode("InvalidInstanceID.NotFound");
+        doThrow(notFound).when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        try (SiteIndex siteIndex = SiteIndex.open(directory.resolve("sites.idx"))) {
+            siteIndex.put(SiteIndexEntry.builder().name("MyWordPressSite").instanceId("i-1234").region("us-west-2").build());
+
+            final ReadHandler handler = new ReadHandler(siteIndex);
+
+            final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(ResourceModel.builder().instanceId("i-1234").build())
+                .build();
+
+            final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, null, logger);
+
+            assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+            assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.NotFound);
+            assertThat(siteIndex.get("i-1234")).isNull();
+        }
+    }
+
+    @Test
+    public void handleRequest_ServedFromReconciledSiteIndex(@TempDir final Path directory) throws Exception {
+        final Instance instance = new Instance().withInstanceId("i-1234").withPublicIpAddress("54.0.0.0")
+            .withSubnetId("subnet-1234").withState(new InstanceState().withName("running"));
+        try (SiteIndex siteIndex = SiteIndex.open(directory.resolve("sites.idx"))) {
+            siteIndex.put(SiteIndexEntry.builder()
+                .name("MyWordPressSite")
+                .instanceId("i-1234")
+                .publicIp("54.0.0.0")
+                .subnetId("subnet-1234")
+                .region("us-west-2")
+                .build());
+            siteIndex.reconcile("us-west-2", describeInstancesRequest ->
+                new DescribeInstancesResult().withReservations(new Reservation().withInstances(instance)));
+
+            final ReadHandler handler = new ReadHandler(siteIndex);
+
+            final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(ResourceModel.builder().instanceId("i-1234").build())
+                .build();
+
+            final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, null, logger);
+
+            assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+            assertThat(response.getResourceModel()).isEqualTo(ResourceModel.builder()
+                .name("MyWordPressSite")
+                .instanceId("i-1234")
+                .publicIp("54.0.0.0")
+                .subnetId("subnet-1234")
+                .region("us-west-2")
+                .build());
+            verifyNoInteractions(proxy);
+        }
+    }
+
+    @Test
+    public void handleRequest_UnreconciledSiteIndexIsCheckedAgainstEc2(@TempDir final Path directory) throws Exception {
+        final Instance instance = new Instance().withInstanceId("i-1234").withState(new InstanceState().withName("terminated"));
+        doReturn(new DescribeInstancesResult().withReservations(new Reservation().withInstances(instance)))
+            .when(proxy).injectCredentialsAndInvoke(any(DescribeInstancesRequest.class), any(Function.class));
+
+        try (SiteIndex siteIndex = SiteIndex.open(directory.resolve("sites.idx"))) {
+            siteIndex.put(SiteIndexEntry.builder().name("MyWordPressSite").instanceId("i-1234").region("us-west-2").build());
+
+            final ReadHandler handler = new ReadHandler(siteIndex);
+
+            final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(ResourceModel.builder().instanceId("i-1234").build())
+                .build();
+
+            final ProgressEvent<ResourceModel, CallbackContext> response
+                = handler.handleRequest(proxy, request, null, logger);
+
+            assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+            assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.NotFound);
+            assertThat(siteIndex.get("i-1234")).isNull();
+        }
+    }
 }
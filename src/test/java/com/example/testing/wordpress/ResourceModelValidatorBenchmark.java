@@ -0,0 +1,58 @@
+package com.example.testing.wordpress;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.InputStream;
+
+/**
+ * Measures validation cost per request: the cached validator, against compiling the schema (parse
+ * plus pattern compilation) for every request. Not part of the unit test run; invoke with the test
+ * classpath, e.g.
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.testing.wordpress.ResourceModelValidatorBenchmark}.
+ */
+public class ResourceModelValidatorBenchmark {
+    private static final int ITERATIONS = 1_000_000;
+
+    interface Validation {
+        int run(ResourceModel model) throws Exception;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final ObjectMapper mapper = new ObjectMapper();
+        final ResourceModel valid = ResourceModel.builder()
+                .name("MyWordPressSite")
+                .subnetId("subnet-0123456789abcdef0")
+                .region("us-west-2")
+                .build();
+        final ResourceModel invalid = ResourceModel.builder()
+                .name("My WordPress Site")
+                .subnetId("sub-1234")
+                .build();
+
+        final Validation cached = model -> ResourceModelValidator.fromSchema().violations(model, true).size();
+        final Validation compiledPerRequest = model -> {
+            try (InputStream schema = ResourceModelValidator.class.getResourceAsStream(ResourceModelValidator.SCHEMA_RESOURCE)) {
+                return new ResourceModelValidator(mapper.readTree(schema)).violations(model, true).size();
+            }
+        };
+
+        for (int round = 0; round < 3; round++) {
+            final boolean report = round == 2;
+            measure("cached, valid", cached, valid, ITERATIONS, report);
+            measure("cached, invalid", cached, invalid, ITERATIONS, report);
+            measure("per request, valid", compiledPerRequest, valid, ITERATIONS / 100, report);
+        }
+    }
+
+    private static void measure(final String label, final Validation validation, final ResourceModel model, final int iterations, final boolean report) throws Exception {
+        int violations = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            violations += validation.run(model);
+        }
+        final long elapsed = System.nanoTime() - start;
+        if (report) {
+            System.out.printf("%-20s %10.0f ns/request (%d violations)%n", label, (double) elapsed / iterations, violations / iterations);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.testing.wordpress;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResourceModelValidatorTest {
+    private final ResourceModelValidator validator = ResourceModelValidator.fromSchema();
+
+    @Test
+    public void testValidModel() {
+        final ResourceModel model = ResourceModel.builder()
+                .name("MyWordPressSite")
+                .subnetId("subnet-0123456789abcdef0")
+                .region("eu-west-1")
+                .build();
+
+        assertThat(validator.violations(model, true)).isEmpty();
+    }
+
+    @Test
+    public void testRequiredProperties() {
+        final ResourceModel model = ResourceModel.builder().instanceId("i-1234").build();
+
+        assertThat(validator.violations(model, true)).containsExactlyInAnyOrder("Name is required", "SubnetId is required");
+        assertThat(validator.violations(model, false)).isEmpty();
+    }
+
+    @Test
+    public void testPatternsAndLengths() {
+        final ResourceModel model = ResourceModel.builder()
+                .name("My WordPress Site")
+                .subnetId("sub-1234")
+                .region("Oregon")
+                .build();
+
+        assertThat(validator.violations(model, true)).containsExactlyInAnyOrder(
+                "Name must match ^[a-zA-Z0-9]{1,219}\\Z",
+                "SubnetId must match ^(subnet-[a-f0-9]{13})|(subnet-[a-f0-9]{8})\\Z",
+                "Region must match ^[a-z]{2}(-gov)?-[a-z]+-[0-9]\\Z");
+        assertThat(validator.violations(ResourceModel.builder().name("").subnetId("subnet-1234abcd").build(), true))
+                .containsExactly("Name must be between 1 and 219 characters long");
+    }
+}
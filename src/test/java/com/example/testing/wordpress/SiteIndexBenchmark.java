@@ -0,0 +1,63 @@
+package com.example.testing.wordpress;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures point lookups against a site index holding a million entries. Not part of the unit test
+ * run; invoke with the test classpath, e.g.
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.testing.wordpress.SiteIndexBenchmark}.
+ */
+public class SiteIndexBenchmark {
+    private static final int ENTRIES = 1_000_000;
+    private static final int LOOKUPS = 5_000_000;
+
+    public static void main(final String[] args) throws Exception {
+        final Path path = Files.createTempFile("site-index-benchmark", ".idx");
+        final String[] instanceIds = new String[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            instanceIds[i] = String.format("i-%017x", i);
+        }
+
+        try (SiteIndex siteIndex = SiteIndex.open(path)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ENTRIES; i++) {
+                siteIndex.put(SiteIndexEntry.builder()
+                        .name("WordPressSite" + i)
+                        .instanceId(instanceIds[i])
+                        .publicIp("54.0." + (i >> 8 & 0xff) + "." + (i & 0xff))
+                        .subnetId("subnet-1234abcd")
+                        .securityGroups(Arrays.asList("sg-1234abcd"))
+                        .build());
+            }
+            System.out.printf("populate: %d entries in %d ms, %d bytes on disk%n",
+                    ENTRIES, (System.nanoTime() - start) / 1_000_000, Files.size(path));
+
+            // Warm up, then measure.
+            lookups(siteIndex, instanceIds, LOOKUPS / 10);
+            start = System.nanoTime();
+            final int hits = lookups(siteIndex, instanceIds, LOOKUPS);
+            final long elapsed = System.nanoTime() - start;
+            System.out.printf("lookup: %d lookups (%d hits), %.1f ns/lookup%n", LOOKUPS, hits, (double) elapsed / LOOKUPS);
+
+            start = System.nanoTime();
+            final int listed = siteIndex.entries().size();
+            System.out.printf("entries: %d listed in %d ms%n", listed, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static int lookups(final SiteIndex siteIndex, final String[] instanceIds, final int count) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        int hits = 0;
+        for (int i = 0; i < count; i++) {
+            if (siteIndex.get(instanceIds[random.nextInt(ENTRIES)]) != null) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.GroupIdentifier;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.services.ec2.model.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SiteIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private static SiteIndexEntry entry(final String instanceId) {
+        return SiteIndexEntry.builder()
+                .name("MyWordPressSite")
+                .instanceId(instanceId)
+                .publicIp("54.0.0.0")
+                .subnetId("subnet-1234")
+                .region("us-west-2")
+                .securityGroups(Arrays.asList("sg-1234", "sg-5678"))
+                .build();
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        try (SiteIndex siteIndex = SiteIndex.open(directory.resolve("sites.idx"))) {
+            siteIndex.put(entry("i-1234"));
+
+            assertThat(siteIndex.get("i-1234")).isEqualTo(entry("i-1234"));
+            assertThat(siteIndex.get("i-5678")).isNull();
+            assertThat(siteIndex.get(null)).isNull();
+            assertThat(siteIndex.size()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        try (SiteIndex siteIndex = SiteIndex.open(directory.resolve("sites.idx"))) {
+            siteIndex.put(entry("i-1234"));
+            siteIndex.put(entry("i-5678"));
+            siteIndex.remove("i-1234");
+            siteIndex.remove("i-unknown");
+
+            assertThat(siteIndex.get("i-1234")).isNull();
+            assertThat(siteIndex.entries()).containsExactly(entry("i-5678"));
+        }
+    }
+
+    @Test
+    public void testEntriesSurviveReopen() throws Exception {
+        final Path path = directory.resolve("sites.idx");
+        try (SiteIndex siteIndex = SiteIndex.open(path)) {
+            siteIndex.put(entry("i-1234"));
+            siteIndex.put(entry("i-5678"));
+            siteIndex.put(entry("i-1234").toBuilder().publicIp("54.0.0.1").build());
+            siteIndex.remove("i-5678");
+        }
+
+        try (SiteIndex siteIndex = SiteIndex.open(path)) {
+            assertThat(siteIndex.entries()).containsExactly(entry("i-1234").toBuilder().publicIp("54.0.0.1").build());
+        }
+    }
+
+    @Test
+    public void testCorruptRecordDropsTheRestOfTheLog() throws Exception {
+        final Path path = directory.resolve("sites.idx");
+        try (SiteIndex siteIndex = SiteIndex.open(path)) {
+            siteIndex.put(entry("i-1234"));
+            siteIndex.put(entry("i-5678"));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Give the second record a body length that runs past the end of the log.
+            final ByteBuffer firstBodyLength = ByteBuffer.allocate(4);
+            channel.read(firstBodyLength, 16);
+            channel.write((ByteBuffer) ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).flip(), 16 + 5 + firstBodyLength.getInt(0));
+        }
+
+        try (SiteIndex siteIndex = SiteIndex.open(path)) {
+            assertThat(siteIndex.entries()).containsExactly(entry("i-1234"));
+            siteIndex.put(entry("i-9999"));
+        }
+        try (SiteIndex siteIndex = SiteIndex.open(path)) {
+            assertThat(siteIndex.entries()).containsExactly(entry("i-1234"), entry("i-9999"));
+        }
+    }
+
+    @Test
+    public void testEndMarkerPastTheLastRecordKeepsTheCompleteRecords() throws Exception {
+        final Path path = directory.resolve("sites.idx");
+        try (SiteIndex siteIndex = SiteIndex.open(path)) {
+            siteIndex.put(entry("i-1234"));
+            siteIndex.put(entry("i-5678"));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // A torn append: the end marker moved but the record it covers was never written.
+            channel.write((ByteBuffer) ByteBuffer.allocate(8).putLong(Long.MAX_VALUE).flip(), 8);
+        }
+
+        try (SiteIndex siteIndex = SiteIndex.open(path)) {
+            assertThat(siteIndex.entries()).containsExactly(entry("i-1234"), entry("i-5678"));
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsLiveEntriesAndGrowsPastInitialMapping() throws Exception {
+        final Path path = directory.resolve("sites.idx");
+        try (SiteIndex siteIndex = SiteIndex.open(path)) {
+            for (int i = 0; i < 20000; i++) {
+                siteIndex.put(entry("i-" + i));
+                if (i % 2 == 0) {
+                    siteIndex.remove("i-" + i);
+                }
+            }
+            siteIndex.compact();
+
+            assertThat(siteIndex.size()).isEqualTo(10000);
+            assertThat(siteIndex.get("i-19999")).isEqualTo(entry("i-19999"));
+        }
+
+        try (SiteIndex siteIndex = SiteIndex.open(path)) {
+            assertThat(siteIndex.size()).isEqualTo(10000);
+        }
+    }
+
+    @Test
+    public void testReconcile() throws Exception {
+        final Instance running = new Instance().withInstanceId("i-1234").withPublicIpAddress("54.0.0.1")
+                .withSubnetId("subnet-1234")
+                .withSecurityGroups(new GroupIdentifier().withGroupId("sg-1234"), new GroupIdentifier().withGroupId("sg-5678"))
+                .withState(new InstanceState().withName("running"));
+        final Instance terminated = new Instance().withInstanceId("i-5678").withState(new InstanceState().withName("terminated"));
+
+        try (SiteIndex siteIndex = SiteIndex.open(directory.resolve("sites.idx"))) {
+            siteIndex.put(entry("i-1234"));
+            siteIndex.put(entry("i-5678"));
+            siteIndex.put(entry("i-9999"));
+            siteIndex.put(entry("i-0000").toBuilder().region("eu-west-1").build());
+
+            assertThat(siteIndex.isReconcileDue("us-west-2")).isTrue();
+            final int changed = siteIndex.reconcile("us-west-2", request ->
+                    new DescribeInstancesResult().withReservations(new Reservation().withInstances(running, terminated)));
+
+            assertThat(changed).isEqualTo(3);
+            assertThat(siteIndex.entries()).containsExactlyInAnyOrder(
+                    entry("i-1234").toBuilder().publicIp("54.0.0.1").build(),
+                    entry("i-0000").toBuilder().region("eu-west-1").build());
+            assertThat(siteIndex.isReconcileDue("us-west-2")).isFalse();
+            assertThat(siteIndex.isReconcileDue("eu-west-1")).isTrue();
+        }
+    }
+
+    @Test
+    public void testReconcileAddsSitesTheIndexIsMissing() throws Exception {
+        final Instance createdElsewhere = new Instance().withInstanceId("i-4321").withPublicIpAddress("54.0.0.2")
+                .withSubnetId("subnet-1234")
+                .withTags(new Tag().withKey("Name").withValue("OtherContainer"))
+                .withState(new InstanceState().withName("running"));
+
+        try (SiteIndex siteIndex = SiteIndex.open(directory.resolve("sites.idx"))) {
+            final int changed = siteIndex.reconcile("us-west-2", request -> {
+                assertThat(request.getFilters()).extracting(Filter::getName).containsExactly("image-id", "instance-state-name");
+                return new DescribeInstancesResult().withReservations(new Reservation().withInstances(createdElsewhere));
+            });
+
+            assertThat(changed).isEqualTo(1);
+            assertThat(siteIndex.entries()).containsExactly(SiteIndexEntry.builder()
+                    .name("OtherContainer")
+                    .instanceId("i-4321")
+                    .publicIp("54.0.0.2")
+                    .subnetId("subnet-1234")
+                    .region("us-west-2")
+                    .build());
+        }
+    }
+}
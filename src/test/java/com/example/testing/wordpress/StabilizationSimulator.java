@@ -0,0 +1,297 @@
+package com.example.testing.wordpress;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.AmazonWebServiceResult;
+import com.amazonaws.ResponseMetadata;
+import com.amazonaws.services.ec2.model.AuthorizeSecurityGroupIngressRequest;
+import com.amazonaws.services.ec2.model.AuthorizeSecurityGroupIngressResult;
+import com.amazonaws.services.ec2.model.CreateSecurityGroupRequest;
+import com.amazonaws.services.ec2.model.CreateSecurityGroupResult;
+import com.amazonaws.services.ec2.model.DeleteSecurityGroupRequest;
+import com.amazonaws.services.ec2.model.DeleteSecurityGroupResult;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
+import com.amazonaws.services.ec2.model.DescribeSubnetsResult;
+import com.amazonaws.services.ec2.model.GroupIdentifier;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.InstanceStateChange;
+import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.services.ec2.model.RunInstancesRequest;
+import com.amazonaws.services.ec2.model.RunInstancesResult;
+import com.amazonaws.services.ec2.model.Subnet;
+import com.amazonaws.services.ec2.model.TerminateInstancesRequest;
+import com.amazonaws.services.ec2.model.TerminateInstancesResult;
+import lombok.Builder;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.Credentials;
+import software.amazon.cloudformation.proxy.LoggerProxy;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Discrete-event simulation of create and delete lifecycles against scripted EC2 behaviour, in
+ * virtual time. Every lifecycle gets the real handler, its own {@link VirtualClock} as the handler's
+ * sleeper, and a client proxy that answers from a {@link Script} instead of calling EC2. Handler
+ * invocations are events ordered by virtual time; a re-invocation is scheduled after the callback
+ * delay the handler asked for plus CloudFormation's re-invoke overhead.
+ *
+ * Thousands of lifecycles, hours of virtual time, run in a couple of seconds, so a change to the polling or timeout policy
+ * can be judged on success rate, virtual duration and EC2 calls before it ships. Run
+ * {@link #main} with the test classpath for a report on a few boot-time distributions, e.g.
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.testing.wordpress.StabilizationSimulator}.
+ */
+public class StabilizationSimulator {
+    static final long NEVER = Long.MAX_VALUE;
+    private static final long DEFAULT_REINVOKE_OVERHEAD_IN_MS = 1000;
+    private static final int MAX_INVOCATIONS = 10_000;
+
+    enum Operation { CREATE, DELETE }
+
+    /**
+     * When the scripted instance changes state, relative to the call that started the change.
+     */
+    @Builder
+    @lombok.Value
+    static class Script {
+        @Builder.Default
+        private long runningAfterMs = 0;
+        @Builder.Default
+        private long terminatedAfterMs = 0;
+    }
+
+    @Builder
+    @lombok.Value
+    static class Outcome {
+        private boolean succeeded;
+        private String failure;
+        private long durationInMs;
+        private int invocations;
+        private Map<String, Integer> calls;
+        private boolean instanceTerminated;
+    }
+
+    private final long reinvokeOverheadInMs;
+
+    public StabilizationSimulator() {
+        this(DEFAULT_REINVOKE_OVERHEAD_IN_MS);
+    }
+
+    StabilizationSimulator(final long reinvokeOverheadInMs) {
+        this.reinvokeOverheadInMs = reinvokeOverheadInMs;
+    }
+
+    public List<Outcome> simulate(final Operation operation, final List<Script> scripts) {
+        final PriorityQueue<Lifecycle> events = new PriorityQueue<>(Comparator.comparingLong(lifecycle -> lifecycle.clock.now()));
+        for (int i = 0; i < scripts.size(); i++) {
+            events.add(new Lifecycle(i, operation, scripts.get(i)));
+        }
+
+        final Outcome[] outcomes = new Outcome[scripts.size()];
+        while (!events.isEmpty()) {
+            final Lifecycle lifecycle = events.poll();
+            final Outcome outcome = lifecycle.invoke();
+            if (outcome == null) {
+                events.add(lifecycle);
+            } else {
+                outcomes[lifecycle.index] = outcome;
+            }
+        }
+        final List<Outcome> results = new ArrayList<>(scripts.size());
+        Collections.addAll(results, outcomes);
+        return results;
+    }
+
+    private final class Lifecycle {
+        private final int index;
+        private final Operation operation;
+        private final VirtualClock clock = new VirtualClock();
+        private final ScriptedProxy proxy;
+        private final ResourceHandlerRequest<ResourceModel> request;
+        private final BaseHandler<CallbackContext> handler;
+        private CallbackContext callbackContext;
+        private int invocations;
+
+        private Lifecycle(final int index, final Operation operation, final Script script) {
+            this.index = index;
+            this.operation = operation;
+            this.proxy = new ScriptedProxy(script, clock, operation == Operation.DELETE);
+            final ResourceModel model = operation == Operation.CREATE ?
+                    ResourceModel.builder().name("Site" + index).subnetId("subnet-1234abcd").build() :
+                    ResourceModel.builder().name("Site" + index).instanceId(ScriptedProxy.INSTANCE_ID).build();
+            this.request = ResourceHandlerRequest.<ResourceModel>builder()
+                    .desiredResourceState(model)
+                    .clientRequestToken("lifecycle-" + index)
+                    .build();
+            this.handler = operation == Operation.CREATE ?
+                    new CreateHandler(null, new InstanceTypeFallback(Collections.singletonList("m4.large"), clock::now), clock) :
+                    new DeleteHandler(null, clock);
+        }
+
+        /**
+         * @return the outcome once the lifecycle is over, null if it was re-scheduled
+         */
+        private Outcome invoke() {
+            invocations++;
+            final ProgressEvent<ResourceModel, CallbackContext> progress;
+            try {
+                progress = handler.handleRequest(proxy, request, callbackContext, new LoggerProxy());
+            } catch (RuntimeException e) {
+                return outcome(false, e.getMessage());
+            }
+            if (progress.getStatus() == OperationStatus.IN_PROGRESS && invocations < MAX_INVOCATIONS) {
+                callbackContext = progress.getCallbackContext();
+                clock.advance(progress.getCallbackDelaySeconds() * 1000L + reinvokeOverheadInMs);
+                return null;
+            }
+            return outcome(progress.getStatus() == OperationStatus.SUCCESS,
+                    progress.getErrorCode() == null ? null : progress.getErrorCode().toString());
+        }
+
+        private Outcome outcome(final boolean succeeded, final String failure) {
+            return Outcome.builder()
+                    .succeeded(succeeded)
+                    .failure(failure)
+                    .durationInMs(clock.now())
+                    .invocations(invocations)
+                    .calls(proxy.calls)
+                    .instanceTerminated(proxy.terminateRequestedAt != NEVER)
+                    .build();
+        }
+    }
+
+    /**
+     * Answers EC2 calls from a script: one subnet, one security group, and one instance that turns
+     * running {@code runningAfterMs} after launch and terminated {@code terminatedAfterMs} after the
+     * terminate call.
+     */
+    private static final class ScriptedProxy extends AmazonWebServicesClientProxy {
+        private static final String INSTANCE_ID = "i-0123456789abcdef0";
+        private static final String SECURITY_GROUP_ID = "sg-0123456789abcdef0";
+
+        private final Script script;
+        private final VirtualClock clock;
+        private final Map<String, Integer> calls = new HashMap<>();
+        private long launchedAt;
+        private long terminateRequestedAt = NEVER;
+
+        private ScriptedProxy(final Script script, final VirtualClock clock, final boolean alreadyLaunched) {
+            super(new LoggerProxy(), new Credentials("accessKeyId", "secretAccessKey", "sessionToken"), () -> Long.MAX_VALUE);
+            this.script = script;
+            this.clock = clock;
+            this.launchedAt = alreadyLaunched ? -script.getRunningAfterMs() : NEVER;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <RequestT extends AmazonWebServiceRequest, ResultT extends AmazonWebServiceResult<ResponseMetadata>> ResultT injectCredentialsAndInvoke(
+                final RequestT request,
+                final Function<RequestT, ResultT> requestFunction) {
+            calls.merge(request.getClass().getSimpleName().replace("Request", ""), 1, Integer::sum);
+            return (ResultT) respond(request);
+        }
+
+        private AmazonWebServiceResult<ResponseMetadata> respond(final AmazonWebServiceRequest request) {
+            if (request instanceof DescribeSubnetsRequest) {
+                return new DescribeSubnetsResult().withSubnets(new Subnet()
+                        .withSubnetId("subnet-1234abcd")
+                        .withVpcId("vpc-1234")
+                        .withAvailabilityZone("us-west-2a"));
+            } else if (request instanceof CreateSecurityGroupRequest) {
+                return new CreateSecurityGroupResult().withGroupId(SECURITY_GROUP_ID);
+            } else if (request instanceof AuthorizeSecurityGroupIngressRequest) {
+                return new AuthorizeSecurityGroupIngressResult();
+            } else if (request instanceof RunInstancesRequest) {
+                launchedAt = clock.now();
+                return new RunInstancesResult().withReservation(new Reservation().withInstances(instance()));
+            } else if (request instanceof DescribeInstancesRequest) {
+                return new DescribeInstancesResult().withReservations(new Reservation().withInstances(instance()));
+            } else if (request instanceof TerminateInstancesRequest) {
+                final InstanceState previousState = instance().getState();
+                if (terminateRequestedAt == NEVER) {
+                    terminateRequestedAt = clock.now();
+                }
+                return new TerminateInstancesResult().withTerminatingInstances(new InstanceStateChange()
+                        .withInstanceId(INSTANCE_ID)
+                        .withPreviousState(previousState)
+                        .withCurrentState(instance().getState()));
+            } else if (request instanceof DeleteSecurityGroupRequest) {
+                return new DeleteSecurityGroupResult();
+            }
+            throw new UnsupportedOperationException("Not scripted: " + request.getClass().getSimpleName());
+        }
+
+        private Instance instance() {
+            return new Instance()
+                    .withInstanceId(INSTANCE_ID)
+                    .withPublicIpAddress("54.0.0.1")
+                    .withSecurityGroups(new GroupIdentifier().withGroupId(SECURITY_GROUP_ID))
+                    .withState(new InstanceState().withName(stateName()));
+        }
+
+        private String stateName() {
+            final long now = clock.now();
+            if (terminateRequestedAt != NEVER) {
+                return now - terminateRequestedAt >= script.getTerminatedAfterMs() ? "terminated" : "shutting-down";
+            }
+            return launchedAt != NEVER && now - launchedAt >= script.getRunningAfterMs() ? "running" : "pending";
+        }
+    }
+
+    public static void main(final String[] args) {
+        final StabilizationSimulator simulator = new StabilizationSimulator();
+        final Random random = new Random(42);
+        final int lifecycles = 5000;
+
+        report("create, boot 30-120s", simulator.simulate(Operation.CREATE,
+                scripts(lifecycles, () -> Script.builder().runningAfterMs(30_000 + random.nextInt(90_000)).build())));
+        report("create, boot 200-400s", simulator.simulate(Operation.CREATE,
+                scripts(lifecycles, () -> Script.builder().runningAfterMs(200_000 + random.nextInt(200_000)).build())));
+        report("create, never boots", simulator.simulate(Operation.CREATE,
+                scripts(lifecycles, () -> Script.builder().runningAfterMs(NEVER).build())));
+        report("delete, terminate 20-90s", simulator.simulate(Operation.DELETE,
+                scripts(lifecycles, () -> Script.builder().terminatedAfterMs(20_000 + random.nextInt(70_000)).build())));
+    }
+
+    private static List<Script> scripts(final int count, final Supplier<Script> script) {
+        final List<Script> scripts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            scripts.add(script.get());
+        }
+        return scripts;
+    }
+
+    private static void report(final String scenario, final List<Outcome> outcomes) {
+        final long[] durations = outcomes.stream().mapToLong(Outcome::getDurationInMs).sorted().toArray();
+        final long succeeded = outcomes.stream().filter(Outcome::isSucceeded).count();
+        final double describes = outcomes.stream()
+                .mapToInt(outcome -> outcome.getCalls().getOrDefault("DescribeInstances", 0))
+                .average()
+                .orElse(0);
+        final double callsPerSuccess = outcomes.stream()
+                .filter(Outcome::isSucceeded)
+                .mapToInt(outcome -> outcome.getCalls().values().stream().mapToInt(Integer::intValue).sum())
+                .average()
+                .orElse(0);
+        System.out.printf("%-26s success %5.1f%%  p50 %6.1fs  p99 %6.1fs  describes/lifecycle %5.1f  calls/success %5.1f%n",
+                scenario,
+                100.0 * succeeded / outcomes.size(),
+                durations[durations.length / 2] / 1000.0,
+                durations[durations.length * 99 / 100] / 1000.0,
+                describes,
+                callsPerSuccess);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.testing.wordpress;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StabilizationSimulatorTest {
+    private static final String EXPECTED_TIMEOUT_MESSAGE = "Timed out waiting for instance to become available.";
+
+    private final StabilizationSimulator simulator = new StabilizationSimulator(0);
+
+    @Test
+    public void testCreateSucceedsOnceTheInstanceIsRunning() {
+        final List<StabilizationSimulator.Outcome> outcomes = simulator.simulate(StabilizationSimulator.Operation.CREATE, Arrays.asList(
+                StabilizationSimulator.Script.builder().runningAfterMs(0).build(),
+                StabilizationSimulator.Script.builder().runningAfterMs(12_000).build()));
+
+        assertThat(outcomes).allMatch(StabilizationSimulator.Outcome::isSucceeded);
+        // Launch, then one poll per 5 seconds until the instance is running, then the success.
+        assertThat(outcomes.get(0).getInvocations()).isEqualTo(2);
+        assertThat(outcomes.get(0).getDurationInMs()).isEqualTo(0);
+        assertThat(outcomes.get(1).getInvocations()).isEqualTo(5);
+        assertThat(outcomes.get(1).getDurationInMs()).isEqualTo(15_000);
+    }
+
+    @Test
+    public void testCreateOfAnInstantlyRunningSiteTakesFourCalls() {
+        final StabilizationSimulator.Outcome outcome = simulator.simulate(StabilizationSimulator.Operation.CREATE, Arrays.asList(
+                StabilizationSimulator.Script.builder().runningAfterMs(0).build())).get(0);
+
+        // Everything is tagged as it is created: no CreateTags, and no describes to find what to tag.
+        assertThat(outcome.isSucceeded()).isTrue();
+        assertThat(outcome.getCalls()).containsOnlyKeys(
+                "DescribeSubnets", "CreateSecurityGroup", "AuthorizeSecurityGroupIngress", "RunInstances");
+        assertThat(outcome.getCalls().values()).containsOnly(1);
+    }
+
+    @Test
+    public void testCreateTimesOutAndRollsBackAfterSixtyPolls() {
+        final List<StabilizationSimulator.Outcome> outcomes = simulator.simulate(StabilizationSimulator.Operation.CREATE, Arrays.asList(
+                StabilizationSimulator.Script.builder().runningAfterMs(StabilizationSimulator.NEVER).build()));
+
+        final StabilizationSimulator.Outcome outcome = outcomes.get(0);
+        assertThat(outcome.isSucceeded()).isFalse();
+        assertThat(outcome.getFailure()).isEqualTo(EXPECTED_TIMEOUT_MESSAGE);
+        assertThat(outcome.getCalls().get("DescribeInstances")).isEqualTo(60);
+        assertThat(outcome.getDurationInMs()).isEqualTo(60 * 5_000);
+        assertThat(outcome.isInstanceTerminated()).isTrue();
+        assertThat(outcome.getCalls().get("DeleteSecurityGroup")).isEqualTo(1);
+    }
+
+    @Test
+    public void testDeleteSucceedsOnceTheInstanceIsTerminated() {
+        final List<StabilizationSimulator.Outcome> outcomes = simulator.simulate(StabilizationSimulator.Operation.DELETE, Arrays.asList(
+                StabilizationSimulator.Script.builder().terminatedAfterMs(20_000).build()));
+
+        final StabilizationSimulator.Outcome outcome = outcomes.get(0);
+        assertThat(outcome.isSucceeded()).isTrue();
+        assertThat(outcome.getDurationInMs()).isEqualTo(20_000);
+        assertThat(outcome.getCalls().get("TerminateInstances")).isEqualTo(1);
+        assertThat(outcome.getCalls().get("DeleteSecurityGroup")).isEqualTo(1);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.testing.wordpress;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock that only moves when someone sleeps on it (or it is advanced explicitly), so pollers and
+ * retry loops run instantly and deterministically.
+ */
+public class VirtualClock implements Sleeper {
+    private final AtomicLong nowInMs = new AtomicLong();
+    private final AtomicLong sleptInMs = new AtomicLong();
+
+    public long now() {
+        return nowInMs.get();
+    }
+
+    /**
+     * @return the total time spent sleeping on this clock
+     */
+    public long slept() {
+        return sleptInMs.get();
+    }
+
+    public void advance(final long millis) {
+        nowInMs.addAndGet(millis);
+    }
+
+    @Override
+    public void sleep(final long millis) {
+        sleptInMs.addAndGet(millis);
+        advance(millis);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.testing.wordpress;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WordPressAmisTest {
+
+    @Test
+    public void testBuiltInRegion() {
+        assertThat(WordPressAmis.isSupported("us-west-2")).isTrue();
+        assertThat(WordPressAmis.forRegion("us-west-2")).isEqualTo("ami-04fb0368671b6f138");
+    }
+
+    @Test
+    public void testUnknownRegion() {
+        assertThat(WordPressAmis.isSupported("ap-south-2")).isFalse();
+        assertThatThrownBy(() -> WordPressAmis.forRegion("ap-south-2"))
+                .hasMessage("No WordPress AMI is configured for region ap-south-2");
+    }
+
+    @Test
+    public void testOverrides() {
+        final Map<String, String> amiIds = WordPressAmis.loadAmiIds("eu-west-1=ami-1111, us-west-2 = ami-2222");
+
+        assertThat(amiIds).containsEntry("eu-west-1", "ami-1111").containsEntry("us-west-2", "ami-2222");
+        assertThatThrownBy(() -> WordPressAmis.loadAmiIds("eu-west-1")).isInstanceOf(IllegalArgumentException.class);
+    }
+}